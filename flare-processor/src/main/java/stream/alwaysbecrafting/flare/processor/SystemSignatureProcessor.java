@@ -0,0 +1,294 @@
+package stream.alwaysbecrafting.flare.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.tools.Diagnostic;
+
+//==============================================================================
+/**
+ * <p>Generates an abstract {@code EntitySystem} base class for each class
+ * annotated with {@code @SystemSignature}
+ *
+ * <p>The generated class requires every listed component, reads each with a
+ * {@code ComponentAccessor} held in a field, and passes them to an abstract
+ * {@code onHandle( Entity, ..., double )} in place of
+ * {@code onHandleEntity}, which it makes final. Runs of entities are read
+ * in {@code onHandleEntities}, which finds each component's column once per
+ * {@code Archetype} and indexes it by row, reading other entities' own
+ * components through the accessors. Annotated classes are
+ * expected to extend the class generated for them, which is named after
+ * them with {@code Base} appended, or after their enclosing classes and
+ * themselves joined by {@code _} when nested.
+ *
+ * <p>Annotations are matched by name, so this processor does not depend on
+ * the Flare library itself.
+ */
+public final class SystemSignatureProcessor extends AbstractProcessor {
+	//--------------------------------------------------------------------------
+
+	private static final String FLARE = "stream.alwaysbecrafting.flare";
+	private static final String ANNOTATION = FLARE + ".SystemSignature";
+
+	private Filer filer;
+	private Messager messager;
+
+	//--------------------------------------------------------------------------
+
+	@Override public synchronized void init( ProcessingEnvironment environment ) {
+		super.init( environment );
+		filer = environment.getFiler();
+		messager = environment.getMessager();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public Set<String> getSupportedAnnotationTypes() {
+		return Collections.singleton( ANNOTATION );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public boolean process( Set<? extends TypeElement> annotations, RoundEnvironment round ) {
+		for ( TypeElement annotation : annotations ) {
+			for ( Element element : round.getElementsAnnotatedWith( annotation )) {
+				if ( element.getKind() != ElementKind.CLASS ) {
+					messager.printMessage( Diagnostic.Kind.ERROR,
+							"@SystemSignature may only be used on classes", element );
+					continue;
+				}
+
+				TypeElement system = (TypeElement)element;
+				List<TypeElement> components = componentsOf( system );
+				if ( components == null ) continue;
+
+				try {
+					generate( system, components );
+				} catch ( IOException e ) {
+					messager.printMessage( Diagnostic.Kind.ERROR,
+							"Could not write base class: " + e.getMessage(), system );
+				}
+			}
+		}
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The component types listed in a system's annotation, or
+	 *         {@code null} after reporting an error
+	 */
+	private List<TypeElement> componentsOf( TypeElement system ) {
+		for ( AnnotationMirror mirror : system.getAnnotationMirrors() ) {
+			TypeElement type = (TypeElement)mirror.getAnnotationType().asElement();
+			if ( !type.getQualifiedName().contentEquals( ANNOTATION )) continue;
+
+			for ( ExecutableElement key : mirror.getElementValues().keySet() ) {
+				if ( !key.getSimpleName().contentEquals( "value" )) continue;
+
+				List<TypeElement> components = new ArrayList<>();
+				List<?> values = (List<?>)mirror.getElementValues().get( key ).getValue();
+				for ( Object value : values ) {
+					TypeMirror component = (TypeMirror)( (AnnotationValue)value ).getValue();
+					if ( !( component instanceof DeclaredType )) {
+						messager.printMessage( Diagnostic.Kind.ERROR,
+								"Components must be classes: " + component, system, mirror );
+						return null;
+					}
+					components.add( (TypeElement)( (DeclaredType)component ).asElement() );
+				}
+
+				if ( components.isEmpty() ) {
+					messager.printMessage( Diagnostic.Kind.ERROR,
+							"@SystemSignature must list at least one component", system, mirror );
+					return null;
+				}
+				return components;
+			}
+		}
+
+		messager.printMessage( Diagnostic.Kind.ERROR, "@SystemSignature must list its components", system );
+		return null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void generate( TypeElement system, List<TypeElement> components ) throws IOException {
+		String packageName = packageOf( system ).getQualifiedName().toString();
+		String baseName = baseNameOf( system );
+
+		List<String> fields = new ArrayList<>();
+		List<String> parameters = new ArrayList<>();
+		for ( TypeElement component : components ) {
+			String parameter = parameterNameOf( component, parameters );
+			parameters.add( parameter );
+			fields.add( parameter.replaceAll( "([a-z0-9])([A-Z])", "$1_$2" ).toUpperCase() );
+		}
+
+		StringBuilder source = new StringBuilder();
+		if ( !packageName.isEmpty() ) source.append( "package " ).append( packageName ).append( ";\n\n" );
+
+		source.append( "import " ).append( FLARE ).append( ".Archetype;\n" );
+		source.append( "import " ).append( FLARE ).append( ".ComponentAccessor;\n" );
+		source.append( "import " ).append( FLARE ).append( ".Entity;\n" );
+		source.append( "import " ).append( FLARE ).append( ".EntitySystem;\n\n" );
+
+		source.append( "/**\n" );
+		source.append( " * <p>Generated from the {@code @SystemSignature} of {@link " )
+				.append( system.getQualifiedName() ).append( "}; do not edit\n" );
+		source.append( " */\n" );
+		source.append( "public abstract class " ).append( baseName ).append( " extends EntitySystem {\n" );
+
+		for ( int i = 0; i < components.size(); i++ ) {
+			String type = components.get( i ).getQualifiedName().toString();
+			source.append( "\tprivate final ComponentAccessor<" ).append( type ).append( "> " )
+					.append( fields.get( i ) ).append( " = new ComponentAccessor<>( " )
+					.append( type ).append( ".class );\n" );
+		}
+		source.append( "\n" );
+
+		source.append( "\t@SuppressWarnings( \"deprecation\" )\n" );
+		source.append( "\tprotected " ).append( baseName ).append( "() {\n" );
+		source.append( "\t\trequireAll(" );
+		for ( int i = 0; i < components.size(); i++ ) {
+			source.append( i == 0 ? " " : ", " ).append( components.get( i ).getQualifiedName() ).append( ".class" );
+		}
+		source.append( " );\n" );
+		source.append( "\t}\n\n" );
+
+		source.append( "\t@Override protected final void onHandleEntity( Entity entity, double deltaTime ) {\n" );
+		source.append( "\t\tonHandle( entity" );
+		for ( String field : fields ) source.append( ", " ).append( field ).append( ".get( entity )" );
+		source.append( ", deltaTime );\n" );
+		source.append( "\t}\n\n" );
+
+		appendBatch( source, components, fields );
+
+		source.append( "\t/**\n" );
+		source.append( "\t * <p>Called for each matching entity with its components, as by\n" );
+		source.append( "\t * {@link EntitySystem#onHandleEntity(Entity, double)}\n" );
+		source.append( "\t */\n" );
+		source.append( "\tprotected abstract void onHandle( Entity entity" );
+		for ( int i = 0; i < components.size(); i++ ) {
+			source.append( ", " ).append( components.get( i ).getQualifiedName() )
+					.append( " " ).append( parameters.get( i ));
+		}
+		source.append( ", double deltaTime );\n" );
+		source.append( "}\n" );
+
+		String qualifiedName = packageName.isEmpty() ? baseName : packageName + "." + baseName;
+		try ( Writer writer = filer.createSourceFile( qualifiedName, system ).openWriter() ) {
+			writer.write( source.toString() );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Write {@code onHandleEntities}, which looks up columns again only
+	 * when the archetype changes or grows between entities
+	 */
+	private static void appendBatch( StringBuilder source, List<TypeElement> components, List<String> fields ) {
+		source.append( "\t@Override protected final void onHandleEntities( Entity[] entities, int from, int to, double deltaTime ) {\n" );
+		source.append( "\t\tArchetype archetype = null;\n" );
+		source.append( "\t\tint capacity = 0;\n" );
+		for ( int i = 0; i < components.size(); i++ ) {
+			source.append( "\t\tObject[] column" ).append( i ).append( " = null;\n" );
+		}
+		source.append( "\t\tfor ( int i = from; i < to; i++ ) {\n" );
+		source.append( "\t\t\tEntity entity = entities[i];\n" );
+		source.append( "\t\t\tArchetype current = entity.getArchetype();\n" );
+		source.append( "\t\t\tif ( current == null ) {\n" );
+		source.append( "\t\t\t\tonHandleEntity( entity, deltaTime );\n" );
+		source.append( "\t\t\t\tcontinue;\n" );
+		source.append( "\t\t\t}\n" );
+		source.append( "\t\t\tif ( current != archetype || current.getCapacity() != capacity ) {\n" );
+		source.append( "\t\t\t\tarchetype = current;\n" );
+		source.append( "\t\t\t\tcapacity = current.getCapacity();\n" );
+		for ( int i = 0; i < components.size(); i++ ) {
+			source.append( "\t\t\t\tcolumn" ).append( i ).append( " = " )
+					.append( fields.get( i )).append( ".getColumn( current );\n" );
+		}
+		source.append( "\t\t\t}\n" );
+		source.append( "\t\t\tint row = entity.getRow();\n" );
+		source.append( "\t\t\tonHandle( entity" );
+		for ( int i = 0; i < components.size(); i++ ) {
+			source.append( ", (" ).append( components.get( i ).getQualifiedName() )
+					.append( ")column" ).append( i ).append( "[row]" );
+		}
+		source.append( ", deltaTime );\n" );
+		source.append( "\t\t}\n" );
+		source.append( "\t}\n\n" );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static PackageElement packageOf( Element element ) {
+		while ( !( element instanceof PackageElement )) element = element.getEnclosingElement();
+		return (PackageElement)element;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code MovementSystemBase} for {@code MovementSystem}, or
+	 *         {@code Game_MovementSystemBase} if nested in {@code Game}
+	 */
+	private static String baseNameOf( TypeElement system ) {
+		String name = system.getSimpleName().toString();
+		for ( Element outer = system.getEnclosingElement();
+		      outer instanceof TypeElement;
+		      outer = outer.getEnclosingElement() ) {
+			name = outer.getSimpleName() + "_" + name;
+		}
+		return name + "Base";
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The component's simple name with a lowercase first letter,
+	 *         numbered if another component already took it
+	 */
+	private static String parameterNameOf( TypeElement component, List<String> taken ) {
+		String simpleName = component.getSimpleName().toString();
+		String name = Character.toLowerCase( simpleName.charAt( 0 )) + simpleName.substring( 1 );
+		if ( SourceVersion.isKeyword( name ) || name.equals( "entity" ) || name.equals( "deltaTime" )) {
+			name = name + "Component";
+		}
+
+		String unique = name;
+		for ( int i = 2; taken.contains( unique ); i++ ) unique = name + i;
+		return unique;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,234 @@
+package stream.alwaysbecrafting.flare.processor;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+
+//==============================================================================
+public class SystemSignatureProcessorTest {
+	//--------------------------------------------------------------------------
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private final DiagnosticCollector<JavaFileObject> DIAGNOSTICS = new DiagnosticCollector<>();
+
+	// Where the last compilation wrote generated sources
+	private File generated;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Compile a class in package {@code game} with the processor, against
+	 * the classpath of the tests
+	 *
+	 * @return A loader for the compiled classes, or {@code null} if
+	 *         compilation failed
+	 */
+	private ClassLoader compile( String className, String source ) throws IOException {
+		JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+		File classes = folder.newFolder();
+		generated = folder.newFolder();
+
+		JavaFileObject file = new SimpleJavaFileObject(
+				URI.create( "string:///game/" + className + ".java" ), JavaFileObject.Kind.SOURCE ) {
+			@Override public CharSequence getCharContent( boolean ignoreEncodingErrors ) {
+				return source;
+			}
+		};
+		List<String> options = Arrays.asList(
+				"-classpath", System.getProperty( "java.class.path" ),
+				"-d", classes.getPath(),
+				"-s", generated.getPath() );
+
+		JavaCompiler.CompilationTask task = compiler.getTask(
+				null, null, DIAGNOSTICS, options, null, Collections.singletonList( file ));
+		task.setProcessors( Collections.singletonList( new SystemSignatureProcessor() ));
+		if ( !task.call() ) return null;
+
+		return new URLClassLoader( new URL[] { classes.toURI().toURL() }, getClass().getClassLoader() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private String errors() {
+		StringBuilder errors = new StringBuilder();
+		for ( Diagnostic<? extends JavaFileObject> diagnostic : DIAGNOSTICS.getDiagnostics() ) {
+			if ( diagnostic.getKind() == Diagnostic.Kind.ERROR ) errors.append( diagnostic.getMessage( null )).append( '\n' );
+		}
+		return errors.toString();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private String generatedSource( String className ) throws IOException {
+		return new String( Files.readAllBytes( new File( generated, "game/" + className + ".java" ).toPath() ), StandardCharsets.UTF_8 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static int occurrences( String text, String part ) {
+		int count = 0;
+		for ( int i = text.indexOf( part ); i >= 0; i = text.indexOf( part, i + 1 )) count++;
+		return count;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static double run( ClassLoader loader, String className ) throws ReflectiveOperationException {
+		return (Double)loader.loadClass( "game." + className ).getMethod( "run" ).invoke( null );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Process_NestedSystem_GeneratesBaseNamedAfterOuterClass() throws Exception {
+		String source = ""
+				+ "package game;\n"
+				+ "import stream.alwaysbecrafting.flare.*;\n"
+				+ "public class Game {\n"
+				+ "  public static class Position { double x; }\n"
+				+ "  public static class Velocity { double x = 2; }\n"
+				+ "  @SystemSignature({ Position.class, Velocity.class })\n"
+				+ "  static class Movement extends Game_MovementBase {\n"
+				+ "    @Override protected void onHandle( Entity entity, Position position, Velocity velocity, double deltaTime ) {\n"
+				+ "      position.x += velocity.x * deltaTime;\n"
+				+ "    }\n"
+				+ "  }\n"
+				+ "  public static double run() {\n"
+				+ "    GameEngine engine = new GameEngine();\n"
+				+ "    Position position = new Position();\n"
+				+ "    engine.add( new Entity( position, new Velocity() ));\n"
+				+ "    engine.add( new Entity( new Position() ));\n"
+				+ "    engine.add( new Movement() );\n"
+				+ "    engine.update( 0.5 );\n"
+				+ "    return position.x;\n"
+				+ "  }\n"
+				+ "}\n";
+
+
+		ClassLoader loader = compile( "Game", source );
+
+
+		Assert.assertNotNull( errors(), loader );
+		Assert.assertEquals( 1.0, run( loader, "Game" ), 0 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Process_ComponentsWithSameSimpleName_NumbersParameters() throws Exception {
+		String source = ""
+				+ "package game;\n"
+				+ "import stream.alwaysbecrafting.flare.*;\n"
+				+ "public class Layers {\n"
+				+ "  public static class Ground { public static class Height { double value = 1; } }\n"
+				+ "  public static class Water { public static class Height { double value = 3; } }\n"
+				+ "  @SystemSignature({ Ground.Height.class, Water.Height.class })\n"
+				+ "  static class Depth extends Layers_DepthBase {\n"
+				+ "    double total;\n"
+				+ "    @Override protected void onHandle( Entity entity, Ground.Height height, Water.Height height2, double deltaTime ) {\n"
+				+ "      total += height2.value - height.value;\n"
+				+ "    }\n"
+				+ "  }\n"
+				+ "  public static double run() {\n"
+				+ "    GameEngine engine = new GameEngine();\n"
+				+ "    engine.add( new Entity( new Ground.Height(), new Water.Height() ));\n"
+				+ "    Depth depth = new Depth();\n"
+				+ "    engine.add( depth );\n"
+				+ "    engine.update( 0 );\n"
+				+ "    return depth.total;\n"
+				+ "  }\n"
+				+ "}\n";
+
+
+		ClassLoader loader = compile( "Layers", source );
+
+
+		Assert.assertNotNull( errors(), loader );
+		Assert.assertEquals( 2.0, run( loader, "Layers" ), 0 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Process_WithArchetypeStorage_ReadsColumnsOncePerArchetype() throws Exception {
+		String source = ""
+				+ "package game;\n"
+				+ "import stream.alwaysbecrafting.flare.*;\n"
+				+ "public class Tables {\n"
+				+ "  public static class Mass { double value; Mass( double value ) { this.value = value; } }\n"
+				+ "  public static class Tag {}\n"
+				+ "  @SystemSignature({ Mass.class })\n"
+				+ "  static class Weigh extends Tables_WeighBase {\n"
+				+ "    double total;\n"
+				+ "    @Override protected void onHandle( Entity entity, Mass mass, double deltaTime ) {\n"
+				+ "      total += mass.value;\n"
+				+ "    }\n"
+				+ "  }\n"
+				+ "  public static double run() {\n"
+				+ "    double total = 0;\n"
+				+ "    for ( ComponentStorage storage : ComponentStorage.values() ) {\n"
+				+ "      GameEngine engine = new GameEngine( storage );\n"
+				+ "      for ( int i = 1; i <= 100; i++ ) {\n"
+				+ "        engine.add( i % 2 == 0 ? new Entity( new Mass( i )) : new Entity( new Mass( i ), new Tag() ));\n"
+				+ "      }\n"
+				+ "      Weigh weigh = new Weigh();\n"
+				+ "      engine.add( weigh );\n"
+				+ "      engine.update( 0 );\n"
+				+ "      total += weigh.total;\n"
+				+ "    }\n"
+				+ "    return total;\n"
+				+ "  }\n"
+				+ "}\n";
+
+
+		ClassLoader loader = compile( "Tables", source );
+
+
+		Assert.assertNotNull( errors(), loader );
+		Assert.assertEquals( 2 * 5050.0, run( loader, "Tables" ), 0 );
+
+		// Columns are looked up only when the archetype changes, and single
+		// components only in the fallback for entities without one
+		String base = generatedSource( "Tables_WeighBase" );
+		Assert.assertEquals( 1, occurrences( base, "MASS.getColumn( current )" ));
+		Assert.assertEquals( 1, occurrences( base, "MASS.get( entity )" ));
+		Assert.assertTrue( base, base.contains( "if ( current != archetype || current.getCapacity() != capacity ) {" ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Process_AnnotatedInterface_ReportsError() throws Exception {
+		String source = ""
+				+ "package game;\n"
+				+ "import stream.alwaysbecrafting.flare.*;\n"
+				+ "@SystemSignature({ String.class })\n"
+				+ "public interface NotASystem {}\n";
+
+
+		ClassLoader loader = compile( "NotASystem", source );
+
+
+		Assert.assertNull( loader );
+		Assert.assertTrue( errors(), errors().contains( "@SystemSignature may only be used on classes" ));
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,28 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>An {@link EntitySystem} doing trivial work per entity, so that benchmarks
+ * measure the engine rather than the system
+ */
+public class BenchmarkSystem extends EntitySystem {
+	//--------------------------------------------------------------------------
+
+	public long handled = 0;
+
+	//--------------------------------------------------------------------------
+
+	@SuppressWarnings( "deprecation" )
+	public BenchmarkSystem() {
+		requireAll( BenchmarkWorld.nextConstraint() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+		handled++;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,131 @@
+package stream.alwaysbecrafting.flare;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//==============================================================================
+/**
+ * <p>Shared fixtures for benchmarks: component types, populated engines, and
+ * any number of distinct {@link GameSystem} classes
+ *
+ * <p>Public, so that system classes copied into other class loaders by
+ * {@link BenchmarkWorld#distinctSystems(Class, int)} can still reach it.
+ */
+public final class BenchmarkWorld {
+	//--------------------------------------------------------------------------
+
+	public static final class A {}
+	public static final class B {}
+	public static final class C {}
+	public static final class D {}
+
+	private static final Class<?>[][] CONSTRAINTS = {
+			{ A.class },
+			{ A.class, B.class },
+			{ B.class, C.class },
+			{ A.class, C.class, D.class },
+	};
+
+	private static int nextConstraint = 0;
+
+	//--------------------------------------------------------------------------
+
+	private BenchmarkWorld() {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The component types for the next {@link BenchmarkSystem} to
+	 *         require, cycling through a few overlapping combinations
+	 */
+	public static Class<?>[] nextConstraint() {
+		return CONSTRAINTS[nextConstraint++ % CONSTRAINTS.length];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Fill an engine with entities, each given every component type with
+	 * even odds
+	 */
+	static Entity[] populate( GameEngine engine, int count, long seed ) {
+		Random random = new Random( seed );
+		Entity[] entities = new Entity[count];
+
+		for ( int i = 0; i < count; i++ ) {
+			Entity entity = new Entity();
+			if ( random.nextBoolean() ) entity.add( new A() );
+			if ( random.nextBoolean() ) entity.add( new B() );
+			if ( random.nextBoolean() ) entity.add( new C() );
+			if ( random.nextBoolean() ) entity.add( new D() );
+			engine.add( entity );
+			entities[i] = entity;
+		}
+		return entities;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Create instances of {@code count} different classes, each a copy of
+	 * {@code template} defined by its own class loader. An engine only holds
+	 * one system of each class, so this is how to fill one with many systems.
+	 *
+	 * <p>{@code template} must be public, have a public no-argument
+	 * constructor, and only use public or protected members of other classes.
+	 */
+	static List<GameSystem> distinctSystems( Class<? extends GameSystem> template, int count ) {
+		byte[] bytes = classBytes( template );
+		List<GameSystem> systems = new ArrayList<>();
+
+		for ( int i = 0; i < count; i++ ) {
+			Class<?> copy = new CopyingLoader( template.getClassLoader() ).define( template.getName(), bytes );
+			try {
+				systems.add( (GameSystem)copy.getDeclaredConstructor().newInstance() );
+			} catch ( ReflectiveOperationException e ) {
+				throw new IllegalStateException( "Could not copy " + template.getName(), e );
+			}
+		}
+		return systems;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static byte[] classBytes( Class<?> type ) {
+		String resource = "/" + type.getName().replace( '.', '/' ) + ".class";
+		try ( InputStream input = type.getResourceAsStream( resource )) {
+			ByteArrayOutputStream output = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for ( int read; ( read = input.read( buffer )) > 0; ) output.write( buffer, 0, read );
+			return output.toByteArray();
+		} catch ( IOException e ) {
+			throw new IllegalStateException( "Could not read " + resource, e );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private static final class CopyingLoader extends ClassLoader {
+		//----------------------------------------------------------------------
+
+		CopyingLoader( ClassLoader parent ) {
+			super( parent );
+		}
+
+		//----------------------------------------------------------------------
+
+		Class<?> define( String name, byte[] bytes ) {
+			return defineClass( name, bytes, 0, bytes.length );
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,83 @@
+package stream.alwaysbecrafting.flare;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+import stream.alwaysbecrafting.flare.BenchmarkWorld.A;
+import stream.alwaysbecrafting.flare.BenchmarkWorld.B;
+import stream.alwaysbecrafting.flare.BenchmarkWorld.D;
+
+//==============================================================================
+/**
+ * <p>Cost of adding and removing entities and components in a populated
+ * engine, with systems tracking them
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class ChurnBenchmark {
+	//--------------------------------------------------------------------------
+
+	private static final int ENTITY_COUNT = 10_000;
+	private static final int SYSTEM_COUNT = 10;
+
+	@Param({ "PER_ENTITY", "ARCHETYPE" })
+	public ComponentStorage storage;
+
+	private final D COMPONENT = new D();
+
+	private GameEngine engine;
+	private Entity outsider;
+	private Entity resident;
+
+	//--------------------------------------------------------------------------
+
+	@Setup public void setUp() {
+		engine = new GameEngine( storage );
+		BenchmarkWorld.distinctSystems( BenchmarkSystem.class, SYSTEM_COUNT ).forEach( engine::add );
+		BenchmarkWorld.populate( engine, ENTITY_COUNT, 42 );
+
+		outsider = new Entity( new A(), new B() );
+		resident = new Entity( new A(), new B() );
+		engine.add( resident );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public void addRemoveEntity() {
+		engine.add( outsider );
+		engine.remove( outsider );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public void createRemoveHandle() {
+		long handle = engine.create();
+		engine.get( handle ).add( COMPONENT );
+		engine.remove( handle );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public void addRemoveComponent() {
+		resident.add( COMPONENT );
+		resident.remove( D.class );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
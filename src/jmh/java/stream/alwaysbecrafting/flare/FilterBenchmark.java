@@ -0,0 +1,110 @@
+package stream.alwaysbecrafting.flare;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import stream.alwaysbecrafting.flare.BenchmarkWorld.A;
+import stream.alwaysbecrafting.flare.BenchmarkWorld.B;
+import stream.alwaysbecrafting.flare.BenchmarkWorld.C;
+
+//==============================================================================
+/**
+ * <p>Cost of matching entities against component types with the
+ * {@link Entity} {@code has*} methods, over 10,000 entities
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class FilterBenchmark {
+	//--------------------------------------------------------------------------
+
+	private static final int ENTITY_COUNT = 10_000;
+
+	private final Collection<Class<?>> TYPES = Arrays.asList( A.class, B.class, C.class );
+
+	private Entity[] entities;
+
+	//--------------------------------------------------------------------------
+
+	@Setup public void setUp() {
+		entities = BenchmarkWorld.populate( new GameEngine(), ENTITY_COUNT, 42 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasAllArray() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasAll( A.class, B.class, C.class )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasAllCollection() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasAll( TYPES )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasAnyArray() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasAny( A.class, B.class, C.class )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasAnyCollection() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasAny( TYPES )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasNoneArray() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasNone( A.class, B.class, C.class )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int hasNoneCollection() {
+		int matches = 0;
+		for ( Entity entity : entities ) {
+			if ( entity.hasNone( TYPES )) matches++;
+		}
+		return matches;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
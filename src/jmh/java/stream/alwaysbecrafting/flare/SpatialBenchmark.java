@@ -0,0 +1,100 @@
+package stream.alwaysbecrafting.flare;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+//==============================================================================
+/**
+ * <p>Cost of a collision broadphase over 100,000 moving entities with a
+ * {@link SpatialGrid}: re-indexing every entity, then querying around each
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SpatialBenchmark {
+	//--------------------------------------------------------------------------
+
+	private static final int ENTITY_COUNT = 100_000;
+	private static final double WORLD_SIZE = 10_000;
+	private static final double RADIUS = 8;
+
+	private static class Position {
+		double x, y, dx, dy;
+	}
+
+	private final Entity[] FOUND = new Entity[64];
+
+	private GameEngine engine;
+	private SpatialGrid<Position> grid;
+	private Entity[] entities;
+
+	//--------------------------------------------------------------------------
+
+	@Setup public void setUp() {
+		engine = new GameEngine();
+		grid = new SpatialGrid<>( Position.class, p -> p.x, p -> p.y, RADIUS * 2 );
+		engine.add( grid );
+
+		Random random = new Random( 42 );
+		entities = new Entity[ENTITY_COUNT];
+		for ( int i = 0; i < ENTITY_COUNT; i++ ) {
+			Position position = new Position();
+			position.x = random.nextDouble() * WORLD_SIZE;
+			position.y = random.nextDouble() * WORLD_SIZE;
+			position.dx = random.nextDouble() - 0.5;
+			position.dy = random.nextDouble() - 0.5;
+			entities[i] = new Entity( position );
+			engine.add( entities[i] );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int moveAndReindex() {
+		move();
+		engine.update( 0 );
+		return grid.size();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public int broadphase() {
+		move();
+		engine.update( 0 );
+
+		int pairs = 0;
+		for ( Entity entity : entities ) {
+			Position position = entity.get( Position.class );
+			pairs += grid.queryRadius( position.x, position.y, RADIUS, FOUND ) - 1;
+		}
+		return pairs;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void move() {
+		for ( Entity entity : entities ) {
+			Position position = entity.get( Position.class );
+			position.x += position.dx;
+			position.y += position.dy;
+			entity.markChanged( Position.class );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,55 @@
+package stream.alwaysbecrafting.flare;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//==============================================================================
+/**
+ * <p>Cost of adding a system to, and removing it by class from, an engine
+ * which already has others
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.NANOSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class SystemBenchmark {
+	//--------------------------------------------------------------------------
+
+	@Param({ "1", "16", "64" })
+	public int systemCount;
+
+	private GameEngine engine;
+	private GameSystem system;
+
+	//--------------------------------------------------------------------------
+
+	@Setup public void setUp() {
+		engine = new GameEngine();
+		BenchmarkWorld.distinctSystems( BenchmarkSystem.class, systemCount ).forEach( engine::add );
+		BenchmarkWorld.populate( engine, 1000, 42 );
+		system = new BenchmarkSystem();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public void addRemoveByClass() {
+		engine.add( system );
+		engine.remove( system.getClass() );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,58 @@
+package stream.alwaysbecrafting.flare;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+//==============================================================================
+/**
+ * <p>Cost of a whole {@link GameEngine#update(double)} as the numbers of
+ * entities and systems grow
+ */
+@State( Scope.Benchmark )
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5 )
+@Measurement( iterations = 5 )
+@Fork( 1 )
+public class UpdateBenchmark {
+	//--------------------------------------------------------------------------
+
+	@Param({ "1000", "10000", "100000", "1000000" })
+	public int entityCount;
+
+	@Param({ "1", "10", "20" })
+	public int systemCount;
+
+	@Param({ "PER_ENTITY", "ARCHETYPE" })
+	public ComponentStorage storage;
+
+	private GameEngine engine;
+
+	//--------------------------------------------------------------------------
+
+	@Setup public void setUp() {
+		engine = new GameEngine( storage );
+		BenchmarkWorld.distinctSystems( BenchmarkSystem.class, systemCount ).forEach( engine::add );
+		BenchmarkWorld.populate( engine, entityCount, 42 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Benchmark public void update() {
+		engine.update( 1 / 60.0 );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
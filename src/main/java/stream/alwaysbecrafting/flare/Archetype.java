@@ -0,0 +1,263 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>A table of every {@link Entity} in a {@link GameEngine} that has exactly
+ * the same set of component types
+ *
+ * <p>Components are stored in one array per type, with the components of a
+ * single entity sharing a row. Rows are kept packed: removing an entity moves
+ * the last row into its place.
+ *
+ * <p>Archetypes only exist in engines using
+ * {@link ComponentStorage#ARCHETYPE}; see
+ * {@link GameEngine#archetypeStream(Class[])}.
+ */
+public final class Archetype {
+	//--------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private final Archetypes OWNER;
+
+	final Bits SIGNATURE = new Bits();
+
+	private final Class<?>[] TYPES;
+	private final int[] TYPE_IDS;
+
+	// Column index of each ComponentType id, or -1 where absent
+	private final int[] COLUMN_OF;
+
+	private final Object[][] COLUMNS;
+
+	private Entity[] entities = new Entity[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// Neighbouring archetypes with one type added or removed, by type id
+	private Archetype[] addEdges    = new Archetype[0];
+	private Archetype[] removeEdges = new Archetype[0];
+
+	//--------------------------------------------------------------------------
+
+	Archetype( Archetypes owner, Class<?>[] types ) {
+		OWNER = owner;
+		TYPES = types;
+		TYPE_IDS = new int[types.length];
+
+		int maxId = -1;
+		for ( int i = 0; i < types.length; i++ ) {
+			TYPE_IDS[i] = ComponentType.idOf( types[i] );
+			SIGNATURE.set( TYPE_IDS[i] );
+			maxId = Math.max( maxId, TYPE_IDS[i] );
+		}
+
+		COLUMN_OF = new int[maxId + 1];
+		Arrays.fill( COLUMN_OF, -1 );
+		for ( int i = 0; i < types.length; i++ ) COLUMN_OF[TYPE_IDS[i]] = i;
+
+		COLUMNS = new Object[types.length][INITIAL_CAPACITY];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of entities in this table
+	 */
+	public int size() { return size; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType A component class
+	 *
+	 * @return {@code true} if entities in this table have a component of the
+	 *         given type, else {@code false}
+	 */
+	public boolean has( Class<?> componentType ) {
+		return columnOf( ComponentType.idOf( componentType )) >= 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param row A row in this table, from {@code 0} to {@code size() - 1}
+	 *
+	 * @return The entity stored in the given row
+	 */
+	public Entity getEntity( int row ) {
+		return entities[row];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Retrieves the backing array for one component type. Rows from
+	 * {@code 0} to {@code size() - 1} hold the components of
+	 * {@link Archetype#getEntity(int)} for the same row.
+	 *
+	 * <p>The returned array is live and must not be modified. It is replaced
+	 * when the table grows, which changes {@link Archetype#getCapacity()}, so
+	 * it should be retrieved again after entities are added to the engine or
+	 * change their components.
+	 *
+	 * @param componentType The class of the component column to retrieve
+	 *
+	 * @return The column of the given type, or {@code null} if entities in this
+	 *         table do not have that component
+	 */
+	public Object[] getColumn( Class<?> componentType ) {
+		return getColumn( ComponentType.idOf( componentType ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of rows this table holds before growing, at which
+	 *         point every column is replaced with a larger one
+	 */
+	public int getCapacity() { return entities.length; }
+
+	//--------------------------------------------------------------------------
+
+	Object[] getColumn( int typeId ) {
+		int column = columnOf( typeId );
+		return column < 0 ? null : COLUMNS[column];
+	}
+
+	//--------------------------------------------------------------------------
+
+	Class<?>[] types() { return TYPES; }
+
+	//--------------------------------------------------------------------------
+
+	Object get( int typeId, int row ) {
+		int column = columnOf( typeId );
+		return column < 0 ? null : COLUMNS[column][row];
+	}
+
+	//--------------------------------------------------------------------------
+
+	void set( int typeId, int row, Object component ) {
+		COLUMNS[columnOf( typeId )][row] = component;
+	}
+
+	//--------------------------------------------------------------------------
+
+	Object getByColumn( int column, int row ) {
+		return COLUMNS[column][row];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The archetype with the same types as this one, plus {@code type}
+	 */
+	Archetype with( Class<?> type, int typeId ) {
+		if ( typeId < addEdges.length && addEdges[typeId] != null ) return addEdges[typeId];
+
+		Class<?>[] types = Arrays.copyOf( TYPES, TYPES.length + 1 );
+		types[TYPES.length] = type;
+		Archetype target = OWNER.get( types );
+
+		addEdges = link( addEdges, typeId, target );
+		target.removeEdges = link( target.removeEdges, typeId, this );
+		return target;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The archetype with the same types as this one, minus the type
+	 *         with id {@code typeId}
+	 */
+	Archetype without( int typeId ) {
+		if ( typeId < removeEdges.length && removeEdges[typeId] != null ) return removeEdges[typeId];
+
+		int removed = columnOf( typeId );
+		Class<?>[] types = new Class<?>[TYPES.length - 1];
+		System.arraycopy( TYPES, 0, types, 0, removed );
+		System.arraycopy( TYPES, removed + 1, types, removed, types.length - removed );
+		Archetype target = OWNER.get( types );
+
+		removeEdges = link( removeEdges, typeId, target );
+		target.addEdges = link( target.addEdges, typeId, this );
+		return target;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add an entity in a new row, with all components {@code null}
+	 */
+	void append( Entity entity ) {
+		if ( size == entities.length ) {
+			int capacity = size * 2;
+			entities = Arrays.copyOf( entities, capacity );
+			for ( int i = 0; i < COLUMNS.length; i++ ) {
+				COLUMNS[i] = Arrays.copyOf( COLUMNS[i], capacity );
+			}
+		}
+
+		entity.archetype = this;
+		entity.row = size;
+		entities[size++] = entity;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Move an entity from this table to another, carrying over every
+	 * component type the two tables share
+	 */
+	void moveTo( Entity entity, Archetype target ) {
+		int oldRow = entity.row;
+		target.append( entity );
+		int newRow = entity.row;
+
+		for ( int i = 0; i < COLUMNS.length; i++ ) {
+			int column = target.columnOf( TYPE_IDS[i] );
+			if ( column >= 0 ) target.COLUMNS[column][newRow] = COLUMNS[i][oldRow];
+		}
+
+		removeRow( oldRow );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove a row, filling the gap with the last row
+	 */
+	void removeRow( int row ) {
+		int last = --size;
+
+		for ( Object[] column : COLUMNS ) {
+			column[row] = column[last];
+			column[last] = null;
+		}
+
+		if ( row != last ) {
+			entities[row] = entities[last];
+			entities[row].row = row;
+		}
+		entities[last] = null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private int columnOf( int typeId ) {
+		return typeId < COLUMN_OF.length ? COLUMN_OF[typeId] : -1;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static Archetype[] link( Archetype[] edges, int typeId, Archetype target ) {
+		if ( typeId >= edges.length ) edges = Arrays.copyOf( edges, typeId + 1 );
+		edges[typeId] = target;
+		return edges;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,54 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//==============================================================================
+/**
+ * <p>Every {@link Archetype} table belonging to one {@link GameEngine}
+ */
+final class Archetypes {
+	//--------------------------------------------------------------------------
+
+	private final Map<Bits,Archetype> BY_SIGNATURE = new HashMap<>();
+
+	final List<Archetype> ALL = new ArrayList<>();
+
+	final Archetype ROOT = get( new Class<?>[0] );
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param signature Bits set for component type ids, which is not kept
+	 *
+	 * @return The archetype with exactly the signature's types, or
+	 *         {@code null} if there is none yet
+	 */
+	Archetype find( Bits signature ) {
+		return BY_SIGNATURE.get( signature );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The archetype with exactly the given types, creating it if
+	 *         necessary
+	 */
+	Archetype get( Class<?>[] types ) {
+		Bits signature = new Bits();
+		for ( Class<?> type : types ) signature.set( ComponentType.idOf( type ));
+
+		Archetype archetype = BY_SIGNATURE.get( signature );
+		if ( archetype == null ) {
+			archetype = new Archetype( this, types );
+			BY_SIGNATURE.put( signature, archetype );
+			ALL.add( archetype );
+		}
+		return archetype;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
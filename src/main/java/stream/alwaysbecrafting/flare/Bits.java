@@ -0,0 +1,141 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>A growable set of small non-negative integers, stored as a bitmask
+ *
+ * <p>Used for component signatures, where each bit is a
+ * {@link ComponentType} id. Comparisons between two {@code Bits} are done a
+ * word at a time and never allocate.
+ */
+final class Bits {
+	//--------------------------------------------------------------------------
+
+	private long[] words = new long[1];
+
+	//--------------------------------------------------------------------------
+
+	boolean get( int index ) {
+		int word = index >>> 6;
+		return word < words.length && ( words[word] & ( 1L << index )) != 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	void set( int index ) {
+		int word = index >>> 6;
+		if ( word >= words.length ) {
+			words = Arrays.copyOf( words, Math.max( word + 1, words.length * 2 ));
+		}
+		words[word] |= 1L << index;
+	}
+
+	//--------------------------------------------------------------------------
+
+	void clear( int index ) {
+		int word = index >>> 6;
+		if ( word < words.length ) words[word] &= ~( 1L << index );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void clear() {
+		Arrays.fill( words, 0L );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void set( Bits other ) {
+		if ( words.length < other.words.length ) {
+			words = new long[other.words.length];
+		}
+		System.arraycopy( other.words, 0, words, 0, other.words.length );
+		Arrays.fill( words, other.words.length, words.length, 0L );
+	}
+
+	//--------------------------------------------------------------------------
+
+	boolean isEmpty() {
+		for ( long word : words ) {
+			if ( word != 0 ) return false;
+		}
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if every bit set in {@code other} is also set here
+	 */
+	boolean containsAll( Bits other ) {
+		long[] mine = words;
+		long[] theirs = other.words;
+		for ( int i = 0; i < theirs.length; i++ ) {
+			long word = i < mine.length ? mine[i] : 0L;
+			if (( theirs[i] & ~word ) != 0 ) return false;
+		}
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if any bit set in {@code other} is also set here
+	 */
+	boolean intersects( Bits other ) {
+		long[] mine = words;
+		long[] theirs = other.words;
+		int length = Math.min( mine.length, theirs.length );
+		for ( int i = 0; i < length; i++ ) {
+			if (( mine[i] & theirs[i] ) != 0 ) return true;
+		}
+		return false;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The index of the first set bit at or after {@code from}, or
+	 *         {@code -1} if there is none
+	 */
+	int nextSetBit( int from ) {
+		int word = from >>> 6;
+		if ( word >= words.length ) return -1;
+
+		long bits = words[word] & ( -1L << from );
+		while ( true ) {
+			if ( bits != 0 ) return ( word << 6 ) + Long.numberOfTrailingZeros( bits );
+			if ( ++word >= words.length ) return -1;
+			bits = words[word];
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public boolean equals( Object other ) {
+		if ( !( other instanceof Bits )) return false;
+		long[] theirs = (( Bits )other ).words;
+		int length = Math.max( words.length, theirs.length );
+		for ( int i = 0; i < length; i++ ) {
+			long mine = i < words.length ? words[i] : 0L;
+			long their = i < theirs.length ? theirs[i] : 0L;
+			if ( mine != their ) return false;
+		}
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public int hashCode() {
+		int length = words.length;
+		while ( length > 0 && words[length - 1] == 0 ) length--;
+		int hash = 1;
+		for ( int i = 0; i < length; i++ ) hash = 31 * hash + Long.hashCode( words[i] );
+		return hash;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,109 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+//==============================================================================
+/**
+ * <p>Hands a run of {@link Entity Entities} to an {@link EntitySystem} in
+ * chunks spread across the threads of a {@link ForkJoinPool}
+ *
+ * <p>Chunk tasks are reused between updates, so iterating does not allocate
+ * once the number of chunks stops growing.
+ */
+// Never serialized; RecursiveAction is only incidentally Serializable
+@SuppressWarnings( "serial" )
+final class ChunkedIteration extends RecursiveAction {
+	//--------------------------------------------------------------------------
+
+	// Chunks per pool thread, so that uneven chunks still balance out
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	private final EntitySystem SYSTEM;
+
+	private Chunk[] chunks = new Chunk[0];
+	private int chunkCount;
+
+	//--------------------------------------------------------------------------
+
+	ChunkedIteration( EntitySystem system ) {
+		SYSTEM = system;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle the first {@code count} entities in {@code entities}, returning
+	 * once all are done
+	 */
+	void run( ForkJoinPool pool, Entity[] entities, int count, int minChunkSize, double deltaTime ) {
+		int maxChunks = Math.max( 1, pool.getParallelism() * CHUNKS_PER_THREAD );
+		chunkCount = Math.max( 1, Math.min( count / minChunkSize, maxChunks ));
+
+		if ( chunks.length < chunkCount ) {
+			int oldLength = chunks.length;
+			chunks = Arrays.copyOf( chunks, chunkCount );
+			for ( int i = oldLength; i < chunkCount; i++ ) chunks[i] = new Chunk();
+		}
+
+		// Spread the remainder over the first chunks, one entity each
+		int baseSize = count / chunkCount;
+		int remainder = count % chunkCount;
+		int from = 0;
+		for ( int i = 0; i < chunkCount; i++ ) {
+			int to = from + baseSize + ( i < remainder ? 1 : 0 );
+			chunks[i].reset( entities, from, to, deltaTime );
+			from = to;
+		}
+
+		reinitialize();
+		// Forked from within the engine's pool, such as by a concurrent system;
+		// other pools, such as one hosting the engine, are not ours to use
+		if ( ForkJoinTask.getPool() == pool ) invoke();
+		else pool.invoke( this );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void compute() {
+		for ( int i = 1; i < chunkCount; i++ ) chunks[i].fork();
+		chunks[0].compute();
+		for ( int i = chunkCount - 1; i > 0; i-- ) chunks[i].join();
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	@SuppressWarnings( "serial" )
+	private final class Chunk extends RecursiveAction {
+		//----------------------------------------------------------------------
+
+		private Entity[] entities;
+		private int from;
+		private int to;
+		private double deltaTime;
+
+		//----------------------------------------------------------------------
+
+		void reset( Entity[] entities, int from, int to, double deltaTime ) {
+			reinitialize();
+			this.entities = entities;
+			this.from = from;
+			this.to = to;
+			this.deltaTime = deltaTime;
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override protected void compute() {
+			SYSTEM.onHandleEntities( entities, from, to, deltaTime );
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,31 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>One primitive field of a {@link ColumnSchema}, stored as an array indexed
+ * by entity slot
+ */
+abstract class Column {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Grow the backing array to hold at least {@code capacity} slots
+	 */
+	abstract void ensureCapacity( int capacity );
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Reset the value in a slot to zero
+	 */
+	abstract void clear( int slot );
+
+	//--------------------------------------------------------------------------
+
+	static int grownCapacity( int current, int required ) {
+		return Math.max( required, current * 2 );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,182 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//==============================================================================
+/**
+ * <p>A numeric component stored as primitive columns, one array per field,
+ * instead of as an object per {@link Entity}
+ *
+ * <p>Subclasses declare their fields in their constructor or initializers:
+ *
+ * <pre>
+ * public class Motion extends ColumnSchema {
+ *     public final FloatColumn X  = floatColumn();
+ *     public final FloatColumn Y  = floatColumn();
+ *     public final FloatColumn VX = floatColumn();
+ *     public final FloatColumn VY = floatColumn();
+ * }
+ * </pre>
+ *
+ * <p>A schema is added to one {@link GameEngine} with
+ * {@link GameEngine#add(ColumnSchema)}, after which entities in that engine
+ * can join it with {@link ColumnSchema#add(Entity)}. Members count as having
+ * a component of the schema's class, so {@link Entity#has(Class)} and
+ * {@link EntitySystem} constraints can match on it, but the schema is not
+ * returned by {@link Entity#get(Class)} and is not part of any
+ * {@link Archetype}.
+ *
+ * <p>Values are read and written through each column's array, indexed by
+ * {@link Entity#getSlot()}, or by walking member slots directly:
+ *
+ * <pre>
+ * float[] x = motion.X.values(), vx = motion.VX.values();
+ * for ( int slot = motion.nextSlot( 0 ); slot &gt;= 0; slot = motion.nextSlot( slot + 1 )) {
+ *     x[slot] += vx[slot] * deltaTime;
+ * }
+ * </pre>
+ */
+public abstract class ColumnSchema {
+	//--------------------------------------------------------------------------
+
+	private final List<Column> COLUMNS = new ArrayList<>();
+
+	// Slots of the entities which are members of this schema
+	private final Bits MEMBERS = new Bits();
+	private int size = 0;
+
+	private final int TYPE_ID = ComponentType.idOf( getClass() );
+
+	GameEngine engine;
+
+	//--------------------------------------------------------------------------
+
+	protected final FloatColumn floatColumn() {
+		return addColumn( new FloatColumn() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	protected final DoubleColumn doubleColumn() {
+		return addColumn( new DoubleColumn() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	protected final IntColumn intColumn() {
+		return addColumn( new IntColumn() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	public GameEngine getEngine() { return engine; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of entities in this schema
+	 */
+	public int size() { return size; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Make an entity a member of this schema, with every column's value set
+	 * to zero
+	 *
+	 * @param entity An entity in the same engine as this schema
+	 *
+	 * @return {@code true} if the entity was added, or {@code false} if it was
+	 *         already a member
+	 *
+	 * @throws IllegalStateException If the entity is not in this schema's engine
+	 */
+	public boolean add( Entity entity ) {
+		if ( engine == null || entity.engine != engine ) {
+			throw new IllegalStateException( "Entity is not in this schema's engine" );
+		}
+		if ( MEMBERS.get( entity.slot )) return false;
+
+		MEMBERS.set( entity.slot );
+		size++;
+		for ( Column column : COLUMNS ) column.clear( entity.slot );
+
+		entity.SIGNATURE.set( TYPE_ID );
+		entity.reserve( TYPE_ID );
+		engine.onComponentsChanged( entity );
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove an entity from this schema
+	 *
+	 * @param entity The entity to remove
+	 *
+	 * @return {@code true} if the entity was removed, or {@code false} if it
+	 *         was not a member
+	 */
+	public boolean remove( Entity entity ) {
+		if ( !has( entity )) return false;
+
+		release( entity );
+		engine.onComponentsChanged( entity );
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entity An entity to check
+	 *
+	 * @return {@code true} if the entity is a member of this schema, else {@code false}
+	 */
+	public boolean has( Entity entity ) {
+		return entity.engine == engine && entity.slot >= 0 && MEMBERS.get( entity.slot );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param from The slot to start searching from
+	 *
+	 * @return The slot of the first member at or after {@code from}, or
+	 *         {@code -1} if there are none
+	 */
+	public int nextSlot( int from ) {
+		return MEMBERS.nextSetBit( from );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Drop an entity's membership without notifying systems, for entities
+	 * leaving the engine
+	 */
+	void release( Entity entity ) {
+		MEMBERS.clear( entity.slot );
+		size--;
+		entity.SIGNATURE.clear( TYPE_ID );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void ensureCapacity( int capacity ) {
+		for ( Column column : COLUMNS ) column.ensureCapacity( capacity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private <T extends Column> T addColumn( T column ) {
+		if ( engine != null ) {
+			throw new IllegalStateException( "Columns must be declared before adding a schema to an engine" );
+		}
+		COLUMNS.add( column );
+		return column;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,153 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>Records changes to {@link Entity Entities} and their components so they
+ * can be applied later, at a point where nothing is iterating them
+ *
+ * <p>Each thread gets its own buffer from {@link GameEngine#commands()}, so
+ * recording never contends with other threads. The engine applies every
+ * buffer, in the order each thread first used one, after each system (or
+ * after each group of concurrently running systems) finishes its update.
+ *
+ * <p>Buffers should only be used by systems during
+ * {@link GameEngine#update(double)}; the engine may apply them at any time
+ * outside of a system's update.
+ */
+public final class CommandBuffer {
+	//--------------------------------------------------------------------------
+
+	private static final byte SPAWN            = 0;
+	private static final byte DESTROY          = 1;
+	private static final byte ADD_COMPONENT    = 2;
+	private static final byte REMOVE_COMPONENT = 3;
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private byte[] ops = new byte[INITIAL_CAPACITY];
+	private Entity[] entities = new Entity[INITIAL_CAPACITY];
+	private Object[] arguments = new Object[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// The thread recording into this buffer; once it dies, the buffer is
+	// applied one last time and dropped
+	private final Thread OWNER;
+
+	//--------------------------------------------------------------------------
+
+	CommandBuffer( Thread owner ) {
+		OWNER = owner;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add an entity to the engine at the next sync point
+	 *
+	 * @param entity Entity to add
+	 *
+	 * @see GameEngine#add(Entity)
+	 */
+	public void spawn( Entity entity ) {
+		record( SPAWN, entity, null );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove an entity from the engine at the next sync point
+	 *
+	 * @param entity Entity to remove
+	 *
+	 * @see GameEngine#remove(Entity)
+	 */
+	public void destroy( Entity entity ) {
+		record( DESTROY, entity, null );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add a component to an entity at the next sync point
+	 *
+	 * @param entity The entity to give the component to
+	 * @param component The component to add
+	 *
+	 * @see Entity#add(Object)
+	 */
+	public void add( Entity entity, Object component ) {
+		record( ADD_COMPONENT, entity, component );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove a component from an entity at the next sync point
+	 *
+	 * @param entity The entity to take the component from
+	 * @param componentType The class of the component to remove
+	 *
+	 * @see Entity#remove(Class)
+	 */
+	public void remove( Entity entity, Class<?> componentType ) {
+		record( REMOVE_COMPONENT, entity, componentType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	boolean isEmpty() { return size == 0; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if no more commands can be recorded, because the
+	 *         owning thread has died
+	 */
+	boolean isAbandoned() { return !OWNER.isAlive(); }
+
+	//--------------------------------------------------------------------------
+
+	boolean isOwnedBy( Thread thread ) { return OWNER == thread; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Perform every recorded change in order, then empty the buffer
+	 */
+	void apply( GameEngine engine ) {
+		for ( int i = 0; i < size; i++ ) {
+			Entity entity = entities[i];
+			switch ( ops[i] ) {
+				case SPAWN:            engine.add( entity ); break;
+				case DESTROY:          engine.remove( entity ); break;
+				case ADD_COMPONENT:    entity.add( arguments[i] ); break;
+				case REMOVE_COMPONENT: entity.remove( (Class<?>)arguments[i] ); break;
+			}
+		}
+
+		Arrays.fill( entities, 0, size, null );
+		Arrays.fill( arguments, 0, size, null );
+		size = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void record( byte op, Entity entity, Object argument ) {
+		if ( size == ops.length ) {
+			int capacity = size * 2;
+			ops = Arrays.copyOf( ops, capacity );
+			entities = Arrays.copyOf( entities, capacity );
+			arguments = Arrays.copyOf( arguments, capacity );
+		}
+
+		ops[size] = op;
+		entities[size] = entity;
+		arguments[size] = argument;
+		size++;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,82 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>Reads one type of component from many entities, resolving the type once
+ * rather than on every access as {@link Entity#get(Class)} does
+ *
+ * <p>In an engine using {@link ComponentStorage#ARCHETYPE}, reading a
+ * component costs a lookup of its column in the entity's {@link Archetype}
+ * and an array read, without hashing its class or allocating.
+ *
+ * <p>Accessors are used by the system base classes generated for
+ * {@link SystemSignature}, and may be kept as fields of any system:
+ *
+ * <pre>
+ * private final ComponentAccessor&lt;Position&gt; POSITION = new ComponentAccessor&lt;&gt;( Position.class );
+ *
+ * &#64;Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+ *     Position position = POSITION.get( entity );
+ *     ...
+ * }
+ * </pre>
+ *
+ * <p>An accessor may be shared by threads handling entities concurrently.
+ *
+ * @param <T> The type of component to read
+ */
+public final class ComponentAccessor<T> {
+	//--------------------------------------------------------------------------
+
+	private final Class<T> TYPE;
+	private final int TYPE_ID;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType The class of the component to read
+	 */
+	public ComponentAccessor( Class<T> componentType ) {
+		TYPE = componentType;
+		TYPE_ID = ComponentType.idOf( componentType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	public Class<T> getType() { return TYPE; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entity The entity to read from
+	 *
+	 * @return The entity's component of this accessor's type, or {@code null}
+	 */
+	@SuppressWarnings( "unchecked" )
+	public T get( Entity entity ) {
+		Archetype archetype = entity.archetype;
+		if ( archetype == null ) return (T)entity.getOwn( TYPE_ID );
+
+		return (T)archetype.get( TYPE_ID, entity.row );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Find the column of this accessor's type once for many entities in the
+	 * same table, to index by {@link Entity#getRow()}. The column remains
+	 * valid until the table's {@link Archetype#getCapacity() capacity}
+	 * changes.
+	 *
+	 * @param archetype A table of entities
+	 *
+	 * @return The table's column of this accessor's type, or {@code null} if
+	 *         it has none
+	 */
+	public Object[] getColumn( Archetype archetype ) {
+		return archetype.getColumn( TYPE_ID );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,42 @@
+package stream.alwaysbecrafting.flare;
+
+import java.nio.ByteBuffer;
+
+//==============================================================================
+/**
+ * <p>Converts components of one type to and from bytes
+ *
+ * <p>Codecs are registered with {@link ComponentCodecs} under a stable id,
+ * and used to save and load {@link Entity Entities}.
+ *
+ * @param <T> The type of component
+ */
+public interface ComponentCodec<T> {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Write a component at the buffer's position. If the buffer runs out of
+	 * room, the {@link java.nio.BufferOverflowException} should be allowed to
+	 * propagate; the write will be retried with a larger buffer.
+	 *
+	 * @param component The component to write
+	 * @param buffer The buffer to write to
+	 */
+	void write( T component, ByteBuffer buffer );
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Read a component written by {@link ComponentCodec#write(Object, ByteBuffer)}
+	 * from the buffer's position. The buffer's limit is set to the end of the
+	 * component's bytes.
+	 *
+	 * @param buffer The buffer to read from
+	 *
+	 * @return A new component
+	 */
+	T read( ByteBuffer buffer );
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,165 @@
+package stream.alwaysbecrafting.flare;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+//==============================================================================
+/**
+ * <p>A set of {@link ComponentCodec}s, each registered under an id which
+ * identifies its component type in saved data
+ *
+ * <p>Ids must stay the same between the program that saves data and the one
+ * that loads it. Components without a registered codec are not saved.
+ *
+ * <p>An entity is encoded as a count of components, followed by each
+ * component's codec id, byte length, and bytes.
+ */
+public final class ComponentCodecs {
+	//--------------------------------------------------------------------------
+
+	private final List<Codec<?>> CODECS = new ArrayList<>();
+	private final Map<Integer,Codec<?>> BY_ID = new HashMap<>();
+	private final Map<Class<?>,Codec<?>> BY_TYPE = new HashMap<>();
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Register a codec for one type of component
+	 *
+	 * @param id The id to save components of this type under
+	 * @param componentType The class of component to encode
+	 * @param codec The codec for the component
+	 *
+	 * @throws IllegalStateException If the id or type is already registered
+	 */
+	public <T> void register( int id, Class<T> componentType, ComponentCodec<T> codec ) {
+		if ( BY_ID.containsKey( id )) {
+			throw new IllegalStateException( "Codec id " + id + " already registered" );
+		}
+		if ( BY_TYPE.containsKey( componentType )) {
+			throw new IllegalStateException( componentType.getName() + " already has a codec" );
+		}
+
+		Codec<T> entry = new Codec<>( CODECS.size(), id, componentType, codec );
+		CODECS.add( entry );
+		BY_ID.put( id, entry );
+		BY_TYPE.put( componentType, entry );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType A component class
+	 *
+	 * @return {@code true} if components of the given type are saved, else {@code false}
+	 */
+	public boolean has( Class<?> componentType ) {
+		return BY_TYPE.containsKey( componentType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Write every component of an entity which has a codec
+	 *
+	 * @throws java.nio.BufferOverflowException If the buffer runs out of room,
+	 *         leaving its position unspecified
+	 */
+	void write( Entity entity, ByteBuffer buffer ) {
+		int countPosition = buffer.position();
+		buffer.putInt( 0 );
+
+		int count = 0;
+		for ( int i = 0; i < CODECS.size(); i++ ) {
+			if ( CODECS.get( i ).write( entity, buffer )) count++;
+		}
+
+		buffer.putInt( countPosition, count );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Read components written by {@link ComponentCodecs#write(Entity, ByteBuffer)}
+	 * into an entity, replacing any it already has of the same types. Saved
+	 * types which the entity has but which weren't written are removed;
+	 * components without codecs are left alone. Components with unknown
+	 * codec ids are skipped.
+	 */
+	void read( ByteBuffer buffer, Entity entity ) {
+		Bits written = new Bits();
+
+		int count = buffer.getInt();
+		for ( int i = 0; i < count; i++ ) {
+			int id = buffer.getInt();
+			int length = buffer.getInt();
+			int end = buffer.position() + length;
+			if ( length < 0 || end > buffer.limit() ) throw new BufferUnderflowException();
+
+			Codec<?> codec = BY_ID.get( id );
+			if ( codec != null ) {
+				int limit = buffer.limit();
+				buffer.limit( end );
+				Object component = codec.CODEC.read( buffer );
+				buffer.limit( limit );
+
+				entity.remove( codec.TYPE );
+				entity.add( component );
+				written.set( codec.INDEX );
+			}
+
+			buffer.position( end );
+		}
+
+		for ( int i = 0; i < CODECS.size(); i++ ) {
+			if ( !written.get( i )) entity.remove( CODECS.get( i ).TYPE );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private static final class Codec<T> {
+		//----------------------------------------------------------------------
+
+		final int INDEX;
+		final int ID;
+		final Class<T> TYPE;
+		final ComponentCodec<T> CODEC;
+
+		//----------------------------------------------------------------------
+
+		Codec( int index, int id, Class<T> type, ComponentCodec<T> codec ) {
+			INDEX = index;
+			ID = id;
+			TYPE = type;
+			CODEC = codec;
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * @return {@code true} if the entity had a component to write
+		 */
+		boolean write( Entity entity, ByteBuffer buffer ) {
+			T component = entity.get( TYPE );
+			if ( component == null ) return false;
+
+			buffer.putInt( ID );
+			int lengthPosition = buffer.position();
+			buffer.putInt( 0 );
+			CODEC.write( component, buffer );
+			buffer.putInt( lengthPosition, buffer.position() - lengthPosition - 4 );
+			return true;
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
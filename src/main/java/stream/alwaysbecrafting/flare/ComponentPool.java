@@ -0,0 +1,163 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//==============================================================================
+/**
+ * <p>Recycled instances of one component type, for entities spawned and
+ * removed so often, such as projectiles and particles, that allocating their
+ * components would keep the garbage collector busy
+ *
+ * <p>Pools belong to a {@link GameEngine}; see
+ * {@link GameEngine#pool(Class, Supplier, Consumer, int)}. Components of a
+ * pooled type are returned to the pool when removed from an entity in the
+ * engine with {@link Entity#remove(Class)}, or when their entity is removed
+ * with {@link GameEngine#remove(Entity)}. A returned component is reset, and
+ * must not be used again by whoever held it.
+ *
+ * <pre>
+ * engine.pool( Velocity.class, Velocity::new, v -&gt; v.x = v.y = 0, 1024 );
+ *
+ * Entity bullet = new Entity();
+ * bullet.add( engine.acquire( Velocity.class ));
+ * </pre>
+ *
+ * <p>Hits, misses, and drops are counted, so that pools can be sized from
+ * measurements of a running game.
+ *
+ * @param <T> The type of component pooled
+ */
+public final class ComponentPool<T> {
+	//--------------------------------------------------------------------------
+
+	private final Class<T> TYPE;
+	private final Supplier<? extends T> FACTORY;
+	private final Consumer<? super T> RESET;
+	private final int MAX_SIZE;
+
+	private Object[] free = new Object[16];
+	private int size = 0;
+
+	private long hits = 0;
+	private long misses = 0;
+	private long dropped = 0;
+
+	//--------------------------------------------------------------------------
+
+	ComponentPool( Class<T> type, Supplier<? extends T> factory, Consumer<? super T> reset, int maxSize ) {
+		if ( maxSize < 0 ) throw new IllegalArgumentException( "Negative pool size: " + maxSize );
+
+		TYPE = type;
+		FACTORY = factory;
+		RESET = reset;
+		MAX_SIZE = maxSize;
+	}
+
+	//--------------------------------------------------------------------------
+
+	public Class<T> getType() { return TYPE; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return A recycled component if any are free, or else a new one from
+	 *         the pool's factory
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized T acquire() {
+		if ( size == 0 ) {
+			misses++;
+			return FACTORY.get();
+		}
+
+		hits++;
+		T component = (T)free[--size];
+		free[size] = null;
+		return component;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Reset a component and keep it for reuse, unless the pool is full.
+	 * Called automatically for components leaving entities in the engine;
+	 * only needed for components acquired but never added to one.
+	 *
+	 * @param component A component no longer in use
+	 */
+	public void release( T component ) {
+		if ( RESET != null ) RESET.accept( component );
+
+		synchronized ( this ) {
+			if ( size == MAX_SIZE ) {
+				dropped++;
+				return;
+			}
+
+			if ( size == free.length ) free = Arrays.copyOf( free, Math.min( MAX_SIZE, size * 2 ));
+			free[size++] = component;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of free components waiting to be acquired
+	 */
+	public synchronized int size() { return size; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The most free components kept; released components beyond
+	 *         this are dropped
+	 */
+	public int getMaxSize() { return MAX_SIZE; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of acquisitions given a recycled component
+	 */
+	public synchronized long getHits() { return hits; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of acquisitions which found the pool empty and
+	 *         made a new component
+	 */
+	public synchronized long getMisses() { return misses; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of released components left for the garbage
+	 *         collector because the pool was full
+	 */
+	public synchronized long getDropped() { return dropped; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Reset the hit, miss, and drop counts, such as at the start of a
+	 * measurement
+	 */
+	public synchronized void resetStatistics() {
+		hits = 0;
+		misses = 0;
+		dropped = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@SuppressWarnings( "unchecked" )
+	void releaseObject( Object component ) {
+		release( (T)component );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
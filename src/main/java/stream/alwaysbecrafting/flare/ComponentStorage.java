@@ -0,0 +1,31 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>The ways a {@link GameEngine} can store the components of the
+ * {@link Entity Entities} added to it
+ *
+ * @see GameEngine#GameEngine(ComponentStorage)
+ */
+public enum ComponentStorage {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Each {@link Entity} keeps its own components in a map. Adding and
+	 * removing components is cheap, but components of the same type are
+	 * scattered across the heap.
+	 */
+	PER_ENTITY,
+
+	/**
+	 * <p>{@link Entity Entities} with the same set of component types share
+	 * an {@link Archetype} table, which keeps one contiguous array per
+	 * component type. Iterating a component across many entities walks dense
+	 * arrays, at the cost of moving an entity between tables whenever it
+	 * gains or loses a component.
+	 */
+	ARCHETYPE
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
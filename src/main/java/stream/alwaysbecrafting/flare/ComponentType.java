@@ -0,0 +1,63 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+//==============================================================================
+/**
+ * <p>Registry assigning each component class a small, dense integer id
+ *
+ * <p>Ids are assigned the first time a class is seen and never change, so
+ * they can be used as indexes into {@link Bits} signatures and per-type
+ * arrays.
+ */
+final class ComponentType {
+	//--------------------------------------------------------------------------
+
+	private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+	private static final ClassValue<Integer> IDS = new ClassValue<Integer>() {
+		@Override protected Integer computeValue( Class<?> type ) {
+			return NEXT_ID.getAndIncrement();
+		}
+	};
+
+	//--------------------------------------------------------------------------
+
+	private ComponentType() {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType A component class
+	 *
+	 * @return The id of the given class, assigning one if necessary
+	 */
+	static int idOf( Class<?> componentType ) {
+		return IDS.get( componentType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of ids assigned so far; every id is below it
+	 */
+	static int count() {
+		return NEXT_ID.get();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentTypes Component classes
+	 *
+	 * @return A new {@link Bits} with the id of every given class set
+	 */
+	static Bits maskOf( Class<?>... componentTypes ) {
+		Bits mask = new Bits();
+		for ( Class<?> type : componentTypes ) mask.set( idOf( type ));
+		return mask;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
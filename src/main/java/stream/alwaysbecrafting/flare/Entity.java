@@ -1,10 +1,10 @@
 package stream.alwaysbecrafting.flare;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.Objects;
 
 //==============================================================================
 /**
@@ -18,16 +18,52 @@ import java.util.stream.Stream;
 public class Entity {
 	//--------------------------------------------------------------------------
 
-	private final Map<Class<?>,Object> COMPONENTS = new HashMap<>();
+	// Holds components by ComponentType id unless this entity is stored in an
+	// Archetype. Kept when emptied, so that recycled entities allocate nothing.
+	private Object[] components;
+
+	// One bit per component type present, indexed by ComponentType id
+	final Bits SIGNATURE = new Bits();
 
 	GameEngine engine;
 
+	// Index into slot-based storage such as ColumnSchema, while in an engine
+	int slot = -1;
+
+	// Whether this entity was made by GameEngine.create() and may be reused
+	boolean isRecyclable = false;
+
+	// Where components are stored in an engine using ComponentStorage.ARCHETYPE
+	Archetype archetype;
+	int row;
+
+	// The engine tick at which each component last changed, by ComponentType
+	// id. Only grown when components are added, never when marking changes,
+	// since threads may mark different components of one entity at once.
+	private long[] changeTicks;
+
 	//--------------------------------------------------------------------------
 
+	/**
+	 * @param components The entity's first components
+	 *
+	 * @throws IllegalArgumentException If a component is a {@link ColumnSchema},
+	 *         which entities join with {@link ColumnSchema#add(Entity)} once
+	 *         in an engine
+	 */
 	public Entity( Object... components ) {
-		Arrays.asList( components ).forEach( component -> {
-			COMPONENTS.put( component.getClass(), component );
-		} );
+		for ( Object component : components ) {
+			if ( component instanceof ColumnSchema ) {
+				throw new IllegalArgumentException( "Entities join schemas with ColumnSchema.add(Entity)" );
+			}
+			SIGNATURE.set( ComponentType.idOf( component.getClass() ));
+		}
+
+		this.components = new Object[ComponentType.count()];
+		changeTicks = new long[ComponentType.count()];
+		for ( Object component : components ) {
+			this.components[ComponentType.idOf( component.getClass() )] = component;
+		}
 	}
 
 	//--------------------------------------------------------------------------
@@ -36,11 +72,120 @@ public class Entity {
 
 	//--------------------------------------------------------------------------
 
-	Collection<Class<?>> getComponentTypes() { return COMPONENTS.keySet(); }
+	/**
+	 * @return This entity's index into the columns of each {@link ColumnSchema}
+	 *         in its engine, or {@code -1} if it is not in an engine. Slots
+	 *         of removed entities are reused.
+	 */
+	public int getSlot() { return slot; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The table holding this entity's components, in an engine using
+	 *         {@link ComponentStorage#ARCHETYPE}, or else {@code null}
+	 */
+	public Archetype getArchetype() { return archetype; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return This entity's row in {@link Entity#getArchetype()}, while it has
+	 *         one; rows change as other entities leave the table
+	 */
+	public int getRow() { return row; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Get a handle which refers to this entity for as long as it remains in
+	 * its engine. Unlike slots, handles are never reused for a different
+	 * entity; see {@link GameEngine#get(long)}.
+	 *
+	 * @return This entity's handle, or {@link GameEngine#NULL_HANDLE} if it is
+	 *         not in an engine
+	 */
+	public long getHandle() {
+		return engine == null ? GameEngine.NULL_HANDLE : engine.handleOf( this );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove every component from an entity outside of an engine, keeping
+	 * its storage for reuse
+	 */
+	void clear() {
+		for ( int id = SIGNATURE.nextSetBit( 0 ); id >= 0; id = SIGNATURE.nextSetBit( id + 1 )) {
+			if ( id < components.length ) components[id] = null;
+		}
+		SIGNATURE.clear();
+	}
+
+	//--------------------------------------------------------------------------
+
+	Collection<Class<?>> getComponentTypes() {
+		if ( archetype != null ) return Arrays.asList( archetype.types() );
+
+		List<Class<?>> types = new ArrayList<>();
+		for ( Object component : components ) {
+			if ( component != null ) types.add( component.getClass() );
+		}
+		return types;
+	}
+
+	//--------------------------------------------------------------------------
+
+	Collection getComponents() {
+		List<Object> found = new ArrayList<>();
+		if ( archetype == null ) {
+			for ( Object component : components ) {
+				if ( component != null ) found.add( component );
+			}
+		} else {
+			for ( int i = 0; i < archetype.types().length; i++ ) {
+				found.add( archetype.getByColumn( i, row ));
+			}
+		}
+		return found;
+	}
 
 	//--------------------------------------------------------------------------
 
-	Collection getComponents() { return COMPONENTS.values(); }
+	/**
+	 * <p>Move this entity's components out of its own array and into the
+	 * table for its set of component types
+	 *
+	 * <p>Only the first entity with a new set of types allocates, to make its
+	 * table; later ones find it by {@link Entity#SIGNATURE} and only copy
+	 * references, or grow the table's columns when full.
+	 */
+	void store( Archetypes archetypes ) {
+		Archetype target = archetypes.find( SIGNATURE );
+		if ( target == null ) target = archetypes.get( getComponentTypes().toArray( new Class<?>[0] ));
+
+		target.append( this );
+		for ( int id = SIGNATURE.nextSetBit( 0 ); id >= 0; id = SIGNATURE.nextSetBit( id + 1 )) {
+			target.set( id, row, components[id] );
+			components[id] = null;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Move this entity's components out of its archetype table and back into
+	 * its own array
+	 */
+	void unstore() {
+		for ( Class<?> type : archetype.types() ) {
+			int typeId = ComponentType.idOf( type );
+			reserve( typeId );
+			components[typeId] = archetype.get( typeId, row );
+		}
+		archetype.removeRow( row );
+		archetype = null;
+	}
 
 	//--------------------------------------------------------------------------
 
@@ -48,12 +193,93 @@ public class Entity {
 	 * <p>Add a component to this {@code Entity} if a component of the same type
 	 * does not already exist
 	 *
+	 * <p>Adding a {@link ColumnSchema} makes this entity a member of it, as by
+	 * {@link ColumnSchema#add(Entity)}.
+	 *
 	 * @param component The component to add
 	 *
 	 * @return {@code true} if the component was added, else {@code false}
 	 */
 	public boolean add( Object component ) {
-		return COMPONENTS.putIfAbsent( component.getClass(), component ) == null;
+		if ( component instanceof ColumnSchema ) return ( (ColumnSchema)component ).add( this );
+
+		Class<?> type = component.getClass();
+		int typeId = ComponentType.idOf( type );
+		if ( SIGNATURE.get( typeId )) return false;
+
+		reserve( typeId );
+		if ( archetype == null ) {
+			components[typeId] = component;
+		} else {
+			archetype.moveTo( this, archetype.with( type, typeId ));
+			archetype.set( typeId, row, component );
+		}
+
+		SIGNATURE.set( typeId );
+		if ( engine != null ) engine.onComponentsChanged( this );
+		markChanged( typeId );
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Record that a component has been modified, so that systems using
+	 * {@link EntitySystem#onlyChanged(Class[])} handle this entity when they
+	 * next run. Components are marked automatically when added.
+	 *
+	 * @param componentType The class of the modified component
+	 *
+	 * @return {@code true} if this entity has such a component, else
+	 *         {@code false}
+	 */
+	public boolean markChanged( Class<?> componentType ) {
+		int typeId = ComponentType.idOf( componentType );
+		if ( !SIGNATURE.get( typeId )) return false;
+
+		markChanged( typeId );
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType The class of a component
+	 *
+	 * @return The {@link GameEngine#getTick() tick} of this entity's engine
+	 *         when the component was last added or marked changed, or
+	 *         {@code 0} if it has not been since this entity was created
+	 */
+	public long getChangeTick( Class<?> componentType ) {
+		int typeId = ComponentType.idOf( componentType );
+		return typeId < changeTicks.length ? changeTicks[typeId] : 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Make room to hold, and record changes to, a component type being added
+	 */
+	void reserve( int typeId ) {
+		if ( typeId >= changeTicks.length ) {
+			changeTicks = Arrays.copyOf( changeTicks, Math.max( typeId + 1, ComponentType.count() ));
+		}
+		if ( typeId >= components.length ) {
+			components = Arrays.copyOf( components, Math.max( typeId + 1, ComponentType.count() ));
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Record a change to a component this entity has, for which
+	 * {@link Entity#reserve(int)} was called when it was added
+	 */
+	private void markChanged( int typeId ) {
+		if ( engine != null ) {
+			changeTicks[typeId] = engine.getTick();
+			engine.onComponentChanged( this, typeId );
+		}
 	}
 
 	//--------------------------------------------------------------------------
@@ -65,8 +291,36 @@ public class Entity {
 	 *
 	 * @return If it exists, the component of the given class, else {@code null}
 	 */
+	@SuppressWarnings( "unchecked" )
 	public <T> T get( Class<T> componentType ) {
-		return (T)COMPONENTS.get( componentType );
+		int typeId = ComponentType.idOf( componentType );
+		if ( archetype == null ) return (T)getOwn( typeId );
+		return (T)archetype.get( typeId, row );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove a component from an entity outside of an engine, without
+	 * notifying anyone
+	 *
+	 * @return The removed component
+	 */
+	Object take( int typeId ) {
+		SIGNATURE.clear( typeId );
+		Object taken = components[typeId];
+		components[typeId] = null;
+		return taken;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return This entity's own component of a type, while it is not stored
+	 *         in an {@link Archetype}
+	 */
+	Object getOwn( int typeId ) {
+		return typeId < components.length ? components[typeId] : null;
 	}
 
 	//--------------------------------------------------------------------------
@@ -74,12 +328,39 @@ public class Entity {
 	/**
 	 * <p>Removes a component from this {@code Entity}
 	 *
+	 * <p>If this entity is in an engine which pools components of the type,
+	 * the removed component is returned to the pool; see
+	 * {@link ComponentPool}. Removing a {@link ColumnSchema} class leaves the
+	 * schema, as by {@link ColumnSchema#remove(Entity)}.
+	 *
 	 * @param componentType The class of the component to retrieve
 	 *
 	 * @return {@code true} if a component was removed, else {@code false}
 	 */
 	public boolean remove( Class<?> componentType ) {
-		return COMPONENTS.remove( componentType ) != null;
+		int typeId = ComponentType.idOf( componentType );
+		if ( !SIGNATURE.get( typeId )) return false;
+
+		if ( ColumnSchema.class.isAssignableFrom( componentType )) {
+			ColumnSchema schema = engine == null ? null : engine.schemaOf( componentType );
+			return schema != null && schema.remove( this );
+		}
+
+		Object removed;
+		if ( archetype == null ) {
+			removed = components[typeId];
+			components[typeId] = null;
+		} else {
+			removed = archetype.get( typeId, row );
+			archetype.moveTo( this, archetype.without( typeId ));
+		}
+
+		SIGNATURE.clear( typeId );
+		if ( engine != null ) {
+			engine.onComponentsChanged( this );
+			engine.release( typeId, removed );
+		}
+		return true;
 	}
 
 	//--------------------------------------------------------------------------
@@ -92,7 +373,8 @@ public class Entity {
 	 * @return {@code true} if a component was removed, else {@code false}
 	 */
 	public boolean remove( Object component ) {
-		return COMPONENTS.remove( component.getClass(), component );
+		return Objects.equals( get( component.getClass() ), component )
+				&& remove( component.getClass() );
 	}
 
 	//--------------------------------------------------------------------------
@@ -103,7 +385,10 @@ public class Entity {
 	 * @return {@code true} if there is a component of every listed type, else {@code false}
 	 */
 	public boolean hasAll( Collection<Class<?>> componentTypes ) {
-		return COMPONENTS.keySet().containsAll( componentTypes );
+		for ( Class<?> type : componentTypes ) {
+			if ( !has( type )) return false;
+		}
+		return true;
 	}
 
 	//--------------------------------------------------------------------------
@@ -114,7 +399,10 @@ public class Entity {
 	 * @return {@code true} if there is a component of every listed type, else {@code false}
 	 */
 	public boolean hasAll( Class<?>... componentTypes ) {
-		return Stream.of( componentTypes ).allMatch( COMPONENTS::containsKey );
+		for ( Class<?> type : componentTypes ) {
+			if ( !has( type )) return false;
+		}
+		return true;
 	}
 
 	//--------------------------------------------------------------------------
@@ -125,9 +413,11 @@ public class Entity {
 	 * @return {@code true} if there is a component of at least one listed type, else {@code false}
 	 */
 	public boolean hasAny( Collection<Class<?>> componentTypes ) {
-		return componentTypes.isEmpty()
-				|| COMPONENTS.keySet().stream()
-				.anyMatch( componentTypes::contains );
+		if ( componentTypes.isEmpty() ) return true;
+		for ( Class<?> type : componentTypes ) {
+			if ( has( type )) return true;
+		}
+		return false;
 	}
 
 	//--------------------------------------------------------------------------
@@ -138,8 +428,11 @@ public class Entity {
 	 * @return {@code true} if there is a component of at least one listed type, else {@code false}
 	 */
 	public boolean hasAny( Class<?>... componentTypes ) {
-		return componentTypes.length == 0
-		|| Stream.of( componentTypes ).anyMatch( COMPONENTS::containsKey );
+		if ( componentTypes.length == 0 ) return true;
+		for ( Class<?> type : componentTypes ) {
+			if ( has( type )) return true;
+		}
+		return false;
 	}
 
 	//--------------------------------------------------------------------------
@@ -150,8 +443,10 @@ public class Entity {
 	 * @return {@code true} if there are no components of the listed types, else {@code false}
 	 */
 	public boolean hasNone( Collection<Class<?>> componentTypes ) {
-		return COMPONENTS.keySet().stream()
-				.noneMatch( componentTypes::contains );
+		for ( Class<?> type : componentTypes ) {
+			if ( has( type )) return false;
+		}
+		return true;
 	}
 
 	//--------------------------------------------------------------------------
@@ -162,8 +457,10 @@ public class Entity {
 	 * @return {@code true} if there are no components of the listed types, else {@code false}
 	 */
 	public boolean hasNone( Class<?>... componentTypes ) {
-		return Stream.of( componentTypes )
-				.noneMatch( COMPONENTS::containsKey );
+		for ( Class<?> type : componentTypes ) {
+			if ( has( type )) return false;
+		}
+		return true;
 	}
 
 	//--------------------------------------------------------------------------
@@ -174,7 +471,7 @@ public class Entity {
 	 * @return {@code true} if there is a component of the given type, else {@code false}
 	 */
 	public boolean has( Class<?> componentType ) {
-		return COMPONENTS.containsKey( componentType );
+		return SIGNATURE.get( ComponentType.idOf( componentType ));
 	}
 
 	//--------------------------------------------------------------------------
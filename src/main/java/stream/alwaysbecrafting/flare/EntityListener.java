@@ -0,0 +1,58 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>Receives notice of changes to the {@link Entity Entities} in a
+ * {@link GameEngine}
+ *
+ * <p>Listeners are called on the thread making the change, immediately after
+ * systems have been told of it.
+ *
+ * @see GameEngine#addListener(EntityListener)
+ */
+public interface EntityListener {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when an entity is added to the engine
+	 *
+	 * @param entity The added entity
+	 */
+	default void onEntityAdded( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when an entity is about to be removed from the engine, while
+	 * it still has its components, slot, and handle
+	 *
+	 * @param entity The entity being removed
+	 */
+	default void onEntityRemoved( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when a component is added to or removed from an entity in the
+	 * engine
+	 *
+	 * @param entity The changed entity
+	 */
+	default void onComponentsChanged( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when a component of an entity in the engine is added, or
+	 * reported modified with {@link Entity#markChanged(Class)}
+	 *
+	 * <p>Unlike the other methods, this may be called from several threads
+	 * at once, by systems updating in parallel.
+	 *
+	 * @param entity The entity whose component changed
+	 */
+	default void onComponentModified( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -1,10 +1,6 @@
 package stream.alwaysbecrafting.flare;
 
 
-import java.util.Collections;
-import java.util.LinkedHashSet;
-import java.util.Set;
-
 //==============================================================================
 /**
  * <p>Specialized {@link GameSystem} that handles a set of
@@ -20,26 +16,245 @@ import java.util.Set;
  * <p>After the system is added, {@link EntitySystem#onHandleEntity(Entity, double)} will
  * be called each game loop for every {@link Entity} that matches the given
  * constraints.
+ *
+ * <p>Matching entities are tracked incrementally by the {@link GameEngine}:
+ * {@link EntitySystem#acceptEntity(Entity)} is consulted when the system is
+ * added, when an entity is added to the engine, and when an entity's
+ * components are added or removed, rather than on every game loop.
+ *
+ * <p>Systems whose entities can be handled independently may call
+ * {@link EntitySystem#setParallel(int)} to spread them across threads.
+ *
+ * <p>Systems which only need entities whose components were modified, such as
+ * to copy them to a renderer or across a network, may call
+ * {@link EntitySystem#onlyChanged(Class[])} to skip the rest.
+ *
+ * <p>Systems with too much work to finish each update may spread their
+ * entities across several updates with
+ * {@link EntitySystem#setAmortized(int)} or
+ * {@link EntitySystem#setBudget(long)}.
  */
 public abstract class EntitySystem extends GameSystem {
 	//--------------------------------------------------------------------------
 
-	private Set<Class<?>> requireAllTypes = new LinkedHashSet<>();
-	private Set<Class<?>> requireOneTypes = new LinkedHashSet<>();
-	private Set<Class<?>> forbidTypes     = new LinkedHashSet<>();
+	// Component constraints, compiled to masks of ComponentType ids
+	private final Bits REQUIRE_ALL = new Bits();
+	private final Bits REQUIRE_ONE = new Bits();
+	private final Bits FORBID      = new Bits();
+
+	final Family FAMILY = new Family();
+
+	// Component types whose changes are reported to onChanged()
+	final Bits WATCHED = new Bits();
+
+	// Types which select changed members, and the members changed since the
+	// last update. Changes recorded while handling one set go in the other.
+	final Bits CHANGE_FILTER = new Bits();
+	private Family changed = new Family();
+	private Family handling = new Family();
 
 	// A flag to ensure implementors don't forget super.onUpdate()
 	private boolean onUpdateCalled = false;
 
+	// Entities are handled serially while minChunkSize is 0
+	private int minChunkSize = 0;
+	private ChunkedIteration chunkedIteration;
+
+	// Handles a rotating one of this many slices of the entities each update
+	private int slices = 1;
+	private int nextSlice = 0;
+	private double[] sliceTimes = new double[1];
+	private double sliceTime = 0;
+
+	// Handles entities from the cursor onward until the budget runs out
+	private long budgetNanos = 0;
+	private int cursor = 0;
+
+	// Entities matched and handled by the last update, for FrameProfiler
+	int matchedCount;
+	int handledCount;
+
 	//--------------------------------------------------------------------------
 	//--------------------------------------------------------------------------
 
 	@Override public void onUpdate( GameEngine engine, double deltaTime ) {
 		onUpdateCalled = true;
+		handleEntities( engine, deltaTime );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Pass this update's entities to
+	 * {@link EntitySystem#onHandleEntity(Entity, double)}
+	 */
+	void handleEntities( GameEngine engine, double deltaTime ) {
+		Entity[] entities = FAMILY.members();
+		int count = FAMILY.snapshotSize();
+		matchedCount = count;
+
+		if ( !CHANGE_FILTER.isEmpty() ) {
+			synchronized ( this ) {
+				Family swap = handling;
+				handling = changed;
+				changed = swap;
+			}
+			handleAll( engine, handling.members(), handling.snapshotSize(), deltaTime );
+			handling.clear();
+		} else {
+			handle( engine, entities, count, deltaTime );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle all or part of an array of entities, as set by
+	 * {@link EntitySystem#setParallel(int)},
+	 * {@link EntitySystem#setAmortized(int)}, and
+	 * {@link EntitySystem#setBudget(long)}
+	 */
+	final void handle( GameEngine engine, Entity[] entities, int count, double deltaTime ) {
+		if ( slices > 1 ) {
+			handleSlice( entities, count, deltaTime );
+		} else if ( budgetNanos > 0 ) {
+			handleWithinBudget( entities, count, deltaTime );
+		} else {
+			handleAll( engine, entities, count, deltaTime );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void handleAll( GameEngine engine, Entity[] entities, int count, double deltaTime ) {
+		handledCount = count;
+		if ( minChunkSize > 0 && count >= minChunkSize * 2 ) {
+			if ( chunkedIteration == null ) chunkedIteration = new ChunkedIteration( this );
+			chunkedIteration.run( engine.executionPool(), entities, count, minChunkSize, deltaTime );
+		} else {
+			onHandleEntities( entities, 0, count, deltaTime );
+		}
+	}
 
-		engine.entityStream()
-				.filter( this::acceptEntity )
-				.forEach( entity -> onHandleEntity( entity, deltaTime ));
+	//--------------------------------------------------------------------------
+
+	private void handleSlice( Entity[] entities, int count, double deltaTime ) {
+		int slice = nextSlice;
+		nextSlice = ( slice + 1 ) % slices;
+
+		// Each slice is handled once every slices runs, so is given their time
+		sliceTime += deltaTime - sliceTimes[slice];
+		sliceTimes[slice] = deltaTime;
+
+		int from = (int)( (long)count * slice / slices );
+		int to = (int)( (long)count * ( slice + 1 ) / slices );
+		handledCount = to - from;
+		onHandleEntities( entities, from, to, sliceTime );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void handleWithinBudget( Entity[] entities, int count, double deltaTime ) {
+		long deadline = System.nanoTime() + budgetNanos;
+		if ( cursor >= count ) cursor = 0;
+
+		int handled = 0;
+		while ( handled < count ) {
+			onHandleEntity( entities[cursor], deltaTime );
+			handled++;
+			if ( ++cursor == count ) cursor = 0;
+			if ( System.nanoTime() >= deadline ) break;
+		}
+		handledCount = handled;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle matching entities concurrently, in chunks of at least the given
+	 * size, using the pool given to
+	 * {@link GameEngine#setExecutionPool(java.util.concurrent.ForkJoinPool)}
+	 * or else the common pool. Every chunk is finished before the next system
+	 * runs.
+	 *
+	 * <p>While parallel, {@link EntitySystem#onHandleEntity(Entity, double)}
+	 * must be safe to call from several threads at once, and must record any
+	 * added or removed entities or components in {@link GameEngine#commands()}
+	 * instead of changing them directly.
+	 *
+	 * @param minChunkSize The fewest entities to handle on one thread at a
+	 *                     time, or {@code 0} to handle every entity serially
+	 */
+	protected void setParallel( int minChunkSize ) {
+		if ( minChunkSize < 0 ) throw new IllegalArgumentException( "Negative chunk size: " + minChunkSize );
+		this.minChunkSize = minChunkSize;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle a rotating slice of the matching entities on each run, so that
+	 * every entity is handled once over the given number of runs
+	 *
+	 * <p>{@link EntitySystem#onHandleEntity(Entity, double)} is given the
+	 * time of the last {@code slices} runs, which is roughly the time since
+	 * the entity was last handled. Entities are handled serially, and entities
+	 * which start or stop matching part way through a rotation may be handled
+	 * one run early or late. Has no effect on a system using
+	 * {@link EntitySystem#onlyChanged(Class[])}.
+	 *
+	 * @param slices The number of runs over which to handle every entity, or
+	 *               {@code 1} to handle every entity on every run
+	 */
+	protected void setAmortized( int slices ) {
+		if ( slices < 1 ) throw new IllegalArgumentException( "Slices must be positive: " + slices );
+		this.slices = slices;
+		nextSlice = 0;
+		sliceTimes = new double[slices];
+		sliceTime = 0;
+		budgetNanos = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle matching entities until a time budget is spent on each run,
+	 * then resume with the next entity on the following run. At least one
+	 * entity is handled on each run, and none more than once.
+	 *
+	 * <p>Entities are handled serially, and the clock is checked after each,
+	 * so the budget suits systems with costly entities, such as pathfinding.
+	 * Has no effect on a system using
+	 * {@link EntitySystem#onlyChanged(Class[])}.
+	 *
+	 * @param nanos The time to spend on each run, in nanoseconds, or
+	 *              {@code 0} to handle every entity on every run
+	 */
+	protected void setBudget( long nanos ) {
+		if ( nanos < 0 ) throw new IllegalArgumentException( "Negative budget: " + nanos );
+		budgetNanos = nanos;
+		cursor = 0;
+		slices = 1;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle only matching entities which have started matching, or whose
+	 * components of the given types have been added or marked with
+	 * {@link Entity#markChanged(Class)}, since this system last ran
+	 *
+	 * <p>Changed entities are collected as they are marked, so entities which
+	 * have not changed cost nothing. Must be called before the system is
+	 * added to a {@link GameEngine}.
+	 *
+	 * @param componentTypes The components to watch for changes
+	 */
+	protected void onlyChanged( Class<?>... componentTypes ) {
+		for ( Class<?> type : componentTypes ) {
+			CHANGE_FILTER.set( ComponentType.idOf( type ));
+			WATCHED.set( ComponentType.idOf( type ));
+		}
 	}
 
 	//--------------------------------------------------------------------------
@@ -53,7 +268,7 @@ public abstract class EntitySystem extends GameSystem {
 	 * @param componentTypes The components to include
 	 */
 	@Deprecated protected void requireAll( Class<?>... componentTypes ) {
-		Collections.addAll( requireAllTypes, componentTypes );
+		for ( Class<?> type : componentTypes ) REQUIRE_ALL.set( ComponentType.idOf( type ));
 	}
 
 	//--------------------------------------------------------------------------
@@ -72,7 +287,7 @@ public abstract class EntitySystem extends GameSystem {
 	 * @throws IllegalStateException If {@code requireOne()} has been called before, or if this system is already added to an engine
 	 */
 	@Deprecated protected void requireOne( Class<?>... componentTypes ) {
-		Collections.addAll( requireOneTypes, componentTypes );
+		for ( Class<?> type : componentTypes ) REQUIRE_ONE.set( ComponentType.idOf( type ));
 	}
 
 	//--------------------------------------------------------------------------
@@ -91,7 +306,7 @@ public abstract class EntitySystem extends GameSystem {
 	 * @throws IllegalStateException If {@code forbid()} has been called before, or if this system is already added to an engine
 	 */
 	@Deprecated protected void forbid( Class<?>... componentTypes ) {
-		Collections.addAll( forbidTypes, componentTypes );
+		for ( Class<?> type : componentTypes ) FORBID.set( ComponentType.idOf( type ));
 	}
 
 	//--------------------------------------------------------------------------
@@ -101,11 +316,24 @@ public abstract class EntitySystem extends GameSystem {
 	 * <p>Override to select which entities will be passed to
 	 * {@link EntitySystem#onHandleEntity(Entity, double)}
 	 *
+	 * <p>By default, accepts entities which satisfy the constraints given to
+	 * {@link EntitySystem#requireAll(Class[])},
+	 * {@link EntitySystem#requireOne(Class[])}, and
+	 * {@link EntitySystem#forbid(Class[])}
+	 *
+	 * <p>The result should depend only on which components the entity has,
+	 * since it is re-evaluated only when those change
+	 *
 	 * @param entity An entity to filter
 	 *
 	 * @return {@code true} if this entity should be passed to {@link EntitySystem#onHandleEntity(Entity, double)}, else {@code false}
 	 */
-	protected abstract boolean acceptEntity( Entity entity );
+	protected boolean acceptEntity( Entity entity ) {
+		Bits signature = entity.SIGNATURE;
+		return signature.containsAll( REQUIRE_ALL )
+				&& ( REQUIRE_ONE.isEmpty() || signature.intersects( REQUIRE_ONE ))
+				&& !signature.intersects( FORBID );
+	}
 
 	//--------------------------------------------------------------------------
 
@@ -122,15 +350,119 @@ public abstract class EntitySystem extends GameSystem {
 	protected abstract void onHandleEntity( Entity entity, double deltaTime );
 
 	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Handle a run of matching entities, by default by passing each to
+	 * {@link EntitySystem#onHandleEntity(Entity, double)}
+	 *
+	 * <p>Override to share work between the entities of a run, such as
+	 * finding each {@link Archetype} column once rather than once per entity.
+	 * Systems with {@link EntitySystem#setBudget(long)} are handled one entity
+	 * at a time, without this method.
+	 *
+	 * @param entities Holds the entities to handle
+	 * @param from The index of the first entity to handle
+	 * @param to The index after the last entity to handle
+	 * @param deltaTime As given to
+	 *                  {@link EntitySystem#onHandleEntity(Entity, double)}
+	 */
+	protected void onHandleEntities( Entity[] entities, int from, int to, double deltaTime ) {
+		for ( int i = from; i < to; i++ ) {
+			onHandleEntity( entities[i], deltaTime );
+		}
+	}
+
 	//--------------------------------------------------------------------------
 
-	@Override void update( GameEngine engine, double deltaTime ) {
+	/**
+	 * <p>Override to be told when an entity starts matching this system, as
+	 * soon as it is added to the engine or gains the components to match
+	 *
+	 * @param entity The newly matching {@code Entity}
+	 */
+	protected void onEntityMatched( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Override to be told when an entity stops matching this system, as
+	 * soon as it is removed from the engine or loses the components to match.
+	 * Its slot is still valid during this call.
+	 *
+	 * @param entity The {@code Entity} which no longer matches
+	 */
+	protected void onEntityUnmatched( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	@Override void run( GameEngine engine, double deltaTime ) {
 		onUpdateCalled = false;
-		super.update( engine, deltaTime );
+		super.run( engine, deltaTime );
 
 		if ( !onUpdateCalled ) throw new IllegalStateException( "Need to call super.onUpdate() to handle entities in an EntitySystem" );
 	}
 
 	//--------------------------------------------------------------------------
+
+	void refresh( Entity entity ) {
+		if ( entity.engine != null && acceptEntity( entity )) {
+			if ( !FAMILY.add( entity )) return;
+
+			if ( !CHANGE_FILTER.isEmpty() ) onChanged( entity );
+			matched( entity );
+			onEntityMatched( entity );
+		} else if ( FAMILY.remove( entity )) {
+			if ( !CHANGE_FILTER.isEmpty() ) {
+				synchronized ( this ) {
+					changed.remove( entity );
+					handling.remove( entity );
+				}
+			}
+			unmatched( entity );
+			onEntityUnmatched( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when an entity joins {@link EntitySystem#FAMILY}, before
+	 * {@link EntitySystem#onEntityMatched(Entity)}, for subclasses in this
+	 * package to track their own members
+	 */
+	void matched( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when an entity leaves {@link EntitySystem#FAMILY}, before
+	 * {@link EntitySystem#onEntityUnmatched(Entity)}
+	 */
+	void unmatched( Entity entity ) {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called when a component of a {@link EntitySystem#WATCHED} type is
+	 * added or marked changed. Collects the entity to handle on the next
+	 * update, if it matches; may be called from several threads at once.
+	 */
+	synchronized void onChanged( Entity entity ) {
+		if ( FAMILY.contains( entity )) changed.add( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Forget every matched entity, when this system leaves its engine
+	 */
+	synchronized void clear() {
+		FAMILY.clear();
+		changed.clear();
+		handling.clear();
+	}
+
+	//--------------------------------------------------------------------------
 }
 //------------------------------------------------------------------------------
@@ -0,0 +1,194 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+//==============================================================================
+/**
+ * <p>A stream of events of one type, published by systems and read in batches
+ * by any number of {@link Reader Readers}, each at its own pace
+ *
+ * <p>Events are kept in a ring of instances made up front, which publishers
+ * fill in place rather than allocating new events:
+ *
+ * <pre>
+ * EventChannel&lt;Hit&gt; hits = engine.channel( Hit.class, Hit::new, 256 );
+ *
+ * // In the publishing system
+ * Hit hit = hits.publish();
+ * hit.target = entity;
+ * hit.damage = 10;
+ *
+ * // In a consuming system, created once
+ * EventChannel.Reader&lt;Hit&gt; reader = hits.reader();
+ *
+ * // Each update
+ * for ( Hit hit = reader.poll(); hit != null; hit = reader.poll() ) { ... }
+ * </pre>
+ *
+ * <p>An event stays valid until as many events again as the channel's
+ * capacity have been published. A reader which falls further behind than that
+ * skips the overwritten events, and counts them in
+ * {@link Reader#getDropped()}. Events may be published from several threads
+ * at once, but must be filled in before any reader can run, such as in an
+ * earlier system or wave.
+ *
+ * @param <E> The type of event
+ */
+public final class EventChannel<E> {
+	//--------------------------------------------------------------------------
+
+	private final Object[] EVENTS;
+	private final int MASK;
+
+	// The number of events ever published
+	private volatile long published = 0;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param factory Makes the event instances to reuse
+	 * @param capacity The number of events kept; rounded up to a power of two
+	 */
+	EventChannel( Supplier<? extends E> factory, int capacity ) {
+		if ( capacity < 1 ) throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+
+		int size = Integer.highestOneBit( capacity );
+		if ( size < capacity ) size <<= 1;
+
+		EVENTS = new Object[size];
+		MASK = size - 1;
+		for ( int i = 0; i < size; i++ ) EVENTS[i] = factory.get();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of events kept before the oldest is overwritten
+	 */
+	public int capacity() { return EVENTS.length; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Claim the next event, to be filled in by the caller. The instance is
+	 * reused, so holds whatever was last published into it.
+	 *
+	 * @return The event to fill in
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized E publish() {
+		E event = (E)EVENTS[(int)published & MASK];
+		published++;
+		return event;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return A reader which sees every event published from now on
+	 */
+	public Reader<E> reader() {
+		return new Reader<>( this );
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>A cursor into an {@link EventChannel}. Each reader sees every event,
+	 * independently of other readers. A reader should be used by one thread
+	 * at a time.
+	 *
+	 * @param <E> The type of event
+	 */
+	public static final class Reader<E> {
+		//----------------------------------------------------------------------
+
+		private final EventChannel<E> CHANNEL;
+
+		private long cursor;
+		private long dropped = 0;
+
+		//----------------------------------------------------------------------
+
+		private Reader( EventChannel<E> channel ) {
+			CHANNEL = channel;
+			cursor = channel.published;
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * @return The number of events waiting to be read
+		 */
+		public int available() {
+			skipOverwritten();
+			return (int)( CHANNEL.published - cursor );
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * @return The next unread event, or {@code null} if there is none
+		 */
+		@SuppressWarnings( "unchecked" )
+		public E poll() {
+			skipOverwritten();
+			if ( cursor == CHANNEL.published ) return null;
+			return (E)CHANNEL.EVENTS[(int)cursor++ & CHANNEL.MASK];
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * <p>Read every event published so far
+		 *
+		 * @param handler Given each unread event, oldest first
+		 *
+		 * @return The number of events read
+		 */
+		@SuppressWarnings( "unchecked" )
+		public int drain( Consumer<? super E> handler ) {
+			skipOverwritten();
+			long end = CHANNEL.published;
+			int count = (int)( end - cursor );
+			for ( ; cursor < end; cursor++ ) {
+				handler.accept((E)CHANNEL.EVENTS[(int)cursor & CHANNEL.MASK] );
+			}
+			return count;
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * <p>Mark every event published so far as read, without reading them
+		 */
+		public void skip() {
+			cursor = CHANNEL.published;
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * @return The number of events this reader has missed by falling
+		 *         behind by more than the channel's capacity
+		 */
+		public long getDropped() { return dropped; }
+
+		//----------------------------------------------------------------------
+
+		private void skipOverwritten() {
+			long oldest = CHANNEL.published - CHANNEL.EVENTS.length;
+			if ( cursor < oldest ) {
+				dropped += oldest - cursor;
+				cursor = oldest;
+			}
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,120 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>The set of {@link Entity Entities} currently matched by an
+ * {@link EntitySystem}
+ *
+ * <p>A {@code Family} is maintained incrementally by its {@link GameEngine} as
+ * entities are added and removed, and as their components change, so that
+ * iterating it costs only as much as the number of matching entities.
+ * Members are kept in a packed array, indexed by entity slot, so changing
+ * membership does not allocate.
+ *
+ * <p>Members are iterated through a snapshot which is only refreshed by
+ * {@link Family#members()} after membership changes. A snapshot is never
+ * modified while it is being iterated, so entities may be added or removed
+ * while handling a family.
+ */
+final class Family {
+	//--------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Entity[] members = new Entity[INITIAL_CAPACITY];
+	private int size = 0;
+
+	// One more than each member's index in members, by slot; 0 if absent
+	private int[] indexBySlot = new int[INITIAL_CAPACITY];
+
+	private Entity[] snapshot = new Entity[INITIAL_CAPACITY];
+	private int snapshotSize = 0;
+	private boolean isDirty = false;
+
+	//--------------------------------------------------------------------------
+
+	boolean add( Entity entity ) {
+		int slot = entity.slot;
+		if ( slot >= indexBySlot.length ) {
+			indexBySlot = Arrays.copyOf( indexBySlot, Math.max( slot + 1, indexBySlot.length * 2 ));
+		}
+		if ( indexBySlot[slot] != 0 ) return false;
+
+		if ( size == members.length ) members = Arrays.copyOf( members, size * 2 );
+		members[size++] = entity;
+		indexBySlot[slot] = size;
+		isDirty = true;
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	boolean remove( Entity entity ) {
+		if ( !contains( entity )) return false;
+
+		int index = indexBySlot[entity.slot] - 1;
+		Entity last = members[--size];
+		members[index] = last;
+		indexBySlot[last.slot] = index + 1;
+		members[size] = null;
+		indexBySlot[entity.slot] = 0;
+		isDirty = true;
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	boolean contains( Entity entity ) {
+		int slot = entity.slot;
+		return slot >= 0 && slot < indexBySlot.length && indexBySlot[slot] != 0
+				&& members[indexBySlot[slot] - 1] == entity;
+	}
+
+	//--------------------------------------------------------------------------
+
+	int size() { return size; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove every member. The snapshot is left as it is, since it may be
+	 * being iterated, and is refreshed by the next {@link Family#members()}.
+	 */
+	void clear() {
+		while ( size > 0 ) remove( members[size - 1] );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Refresh the snapshot if membership has changed since the last call
+	 *
+	 * @return The snapshot of members; only the first
+	 *         {@link Family#snapshotSize()} elements are valid. The array must
+	 *         not be modified, and is reused by the next call after membership
+	 *         changes.
+	 */
+	Entity[] members() {
+		if ( isDirty ) {
+			if ( snapshot.length < size ) snapshot = new Entity[members.length];
+			System.arraycopy( members, 0, snapshot, 0, size );
+			if ( snapshotSize > size ) Arrays.fill( snapshot, size, snapshotSize, null );
+			snapshotSize = size;
+			isDirty = false;
+		}
+		return snapshot;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of members in the array from the last call to
+	 *         {@link Family#members()}
+	 */
+	int snapshotSize() { return snapshotSize; }
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,67 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>A {@code float} field of a {@link ColumnSchema}, stored in one array for
+ * every {@link Entity} in the engine
+ *
+ * <p>Values of entities outside the schema are unspecified. The array from
+ * {@link FloatColumn#values()} is replaced when the engine grows, so it should
+ * be retrieved again each update rather than kept.
+ */
+public final class FloatColumn extends Column {
+	//--------------------------------------------------------------------------
+
+	private float[] values = new float[0];
+
+	//--------------------------------------------------------------------------
+
+	FloatColumn() {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The backing array, indexed by {@link Entity#getSlot()}
+	 */
+	public float[] values() { return values; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entity An entity in this column's schema
+	 *
+	 * @return The entity's value in this column
+	 */
+	public float get( Entity entity ) {
+		return values[entity.slot];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entity An entity in this column's schema
+	 * @param value The entity's new value in this column
+	 */
+	public void set( Entity entity, float value ) {
+		values[entity.slot] = value;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override void ensureCapacity( int capacity ) {
+		if ( values.length < capacity ) {
+			values = Arrays.copyOf( values, grownCapacity( values.length, capacity ));
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override void clear( int slot ) {
+		values[slot] = 0;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,209 @@
+package stream.alwaysbecrafting.flare;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.ToLongFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+//==============================================================================
+/**
+ * <p>Measures how long each frame, and each {@link GameSystem} within it,
+ * takes to update
+ *
+ * <p>Every {@link GameEngine} has a profiler, available from
+ * {@link GameEngine#getProfiler()}, which is disabled until
+ * {@link FrameProfiler#setEnabled(boolean)} is called. While disabled, the
+ * only cost is a single check per frame and per system.
+ *
+ * <p>Results are kept as rolling {@link Histogram}s of the most recent frames,
+ * and can be read through {@link FrameProfiler#getFrameTime()} and
+ * {@link FrameProfiler#getSystemProfiles()}, or over JMX once
+ * {@link FrameProfiler#registerMBean(String)} is called.
+ */
+public final class FrameProfiler implements FrameProfilerMXBean {
+	//--------------------------------------------------------------------------
+
+	private static final int DEFAULT_WINDOW = 1024;
+
+	private final int WINDOW;
+
+	private final Histogram FRAME_TIME;
+	private final List<SystemProfile> SYSTEM_PROFILES = new CopyOnWriteArrayList<>();
+
+	private volatile boolean isEnabled = false;
+
+	private ObjectName mbeanName;
+
+	//--------------------------------------------------------------------------
+
+	FrameProfiler() {
+		this( DEFAULT_WINDOW );
+	}
+
+	//--------------------------------------------------------------------------
+
+	FrameProfiler( int window ) {
+		WINDOW = window;
+		FRAME_TIME = new Histogram( window );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public boolean isEnabled() { return isEnabled; }
+
+	//--------------------------------------------------------------------------
+
+	@Override public void setEnabled( boolean enabled ) {
+		isEnabled = enabled;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Discard every measurement recorded so far
+	 */
+	@Override public void reset() {
+		FRAME_TIME.clear();
+		for ( SystemProfile profile : SYSTEM_PROFILES ) {
+			profile.getTime().clear();
+			profile.getMatched().clear();
+			profile.getHandled().clear();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Time taken by each call to {@link GameEngine#update(double)}, in
+	 *         nanoseconds
+	 */
+	public Histogram getFrameTime() { return FRAME_TIME; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Profiles of every system which has updated while profiling, and
+	 *         is still in the engine
+	 */
+	public List<SystemProfile> getSystemProfiles() {
+		return Collections.unmodifiableList( SYSTEM_PROFILES );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Expose this profiler through the platform MBean server, as
+	 * {@code stream.alwaysbecrafting.flare:type=FrameProfiler,name=<name>}
+	 *
+	 * @param name A name distinguishing this engine from others
+	 *
+	 * @throws IllegalStateException If registration fails, such as when the
+	 *                               name is already taken
+	 */
+	public synchronized void registerMBean( String name ) {
+		unregisterMBean();
+		try {
+			ObjectName objectName = new ObjectName(
+					"stream.alwaysbecrafting.flare:type=FrameProfiler,name=" + ObjectName.quote( name ));
+			ManagementFactory.getPlatformMBeanServer().registerMBean( this, objectName );
+			mbeanName = objectName;
+		} catch ( JMException e ) {
+			throw new IllegalStateException( "Could not register profiler MBean " + name, e );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop exposing this profiler over JMX, if it is registered
+	 */
+	public synchronized void unregisterMBean() {
+		if ( mbeanName == null ) return;
+		try {
+			ManagementFactory.getPlatformMBeanServer().unregisterMBean( mbeanName );
+		} catch ( JMException e ) {
+			throw new IllegalStateException( "Could not unregister profiler MBean " + mbeanName, e );
+		} finally {
+			mbeanName = null;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public long getFrameCount() { return FRAME_TIME.count(); }
+
+	@Override public long getFrameP50Nanos() { return FRAME_TIME.p50(); }
+
+	@Override public long getFrameP99Nanos() { return FRAME_TIME.p99(); }
+
+	@Override public long getFrameMaxNanos() { return FRAME_TIME.max(); }
+
+	//--------------------------------------------------------------------------
+
+	@Override public Map<String,Long> getSystemP50Nanos() {
+		return summarize( profile -> profile.getTime().p50() );
+	}
+
+	@Override public Map<String,Long> getSystemP99Nanos() {
+		return summarize( profile -> profile.getTime().p99() );
+	}
+
+	@Override public Map<String,Long> getSystemMaxNanos() {
+		return summarize( profile -> profile.getTime().max() );
+	}
+
+	@Override public Map<String,Long> getSystemP50Handled() {
+		return summarize( profile -> profile.getHandled().p50() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void recordFrame( long nanos ) {
+		FRAME_TIME.record( nanos );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void recordSystem( GameSystem system, long nanos ) {
+		SystemProfile profile = system.profile;
+		if ( profile == null ) {
+			profile = new SystemProfile( system, WINDOW );
+			system.profile = profile;
+			SYSTEM_PROFILES.add( profile );
+		}
+
+		profile.getTime().record( nanos );
+		if ( system instanceof EntitySystem ) {
+			EntitySystem entitySystem = (EntitySystem)system;
+			profile.getMatched().record( entitySystem.matchedCount );
+			profile.getHandled().record( entitySystem.handledCount );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	void forget( GameSystem system ) {
+		if ( system.profile != null ) {
+			SYSTEM_PROFILES.remove( system.profile );
+			system.profile = null;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private Map<String,Long> summarize( ToLongFunction<SystemProfile> statistic ) {
+		Map<String,Long> summary = new LinkedHashMap<>();
+		for ( SystemProfile profile : SYSTEM_PROFILES ) {
+			summary.put( profile.getName(), statistic.applyAsLong( profile ));
+		}
+		return summary;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,45 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Map;
+
+//==============================================================================
+/**
+ * <p>Management interface exposing a {@link FrameProfiler} over JMX
+ *
+ * <p>Times are in nanoseconds, over each histogram's current window. Maps are
+ * keyed by system class name.
+ *
+ * @see FrameProfiler#registerMBean(String)
+ */
+public interface FrameProfilerMXBean {
+	//--------------------------------------------------------------------------
+
+	boolean isEnabled();
+
+	void setEnabled( boolean enabled );
+
+	void reset();
+
+	//--------------------------------------------------------------------------
+
+	long getFrameCount();
+
+	long getFrameP50Nanos();
+
+	long getFrameP99Nanos();
+
+	long getFrameMaxNanos();
+
+	//--------------------------------------------------------------------------
+
+	Map<String,Long> getSystemP50Nanos();
+
+	Map<String,Long> getSystemP99Nanos();
+
+	Map<String,Long> getSystemMaxNanos();
+
+	Map<String,Long> getSystemP50Handled();
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
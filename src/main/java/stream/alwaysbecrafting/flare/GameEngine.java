@@ -1,10 +1,17 @@
 package stream.alwaysbecrafting.flare;
 
-import java.util.HashSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
-import java.util.SortedMap;
-import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import java.util.stream.Stream;
 
 //==============================================================================
@@ -18,13 +25,95 @@ import java.util.stream.Stream;
 public class GameEngine {
 	//--------------------------------------------------------------------------
 
-	private final Set<Entity> ENTITIES = new HashSet<>();
+	/**
+	 * <p>A handle which never refers to an entity
+	 *
+	 * @see Entity#getHandle()
+	 */
+	public static final long NULL_HANDLE = 0L;
+
+	//--------------------------------------------------------------------------
+
+	// Every entity in the engine, by slot
+	private final Slots SLOTS = new Slots();
 
+	// Entities made by create() and since removed, ready to be reused
+	private final Deque<Entity> RECYCLED = new ArrayDeque<>();
 
-	private final SortedMap<GameSystem,Class<? extends GameSystem>> SYSTEMS = new ConcurrentSkipListMap<>();
+
+	private final Map<Class<? extends GameSystem>,GameSystem> SYSTEMS = new HashMap<>();
+
+	// Every system in the order they run, compiled when systems change
+	private GameSystem[] plan = new GameSystem[0];
+	private final List<EntitySystem> ENTITY_SYSTEMS = new ArrayList<>();
+
+	// Systems using EntitySystem.onlyChanged(), by ComponentType id watched.
+	// Read by threads marking changes, so replaced rather than modified.
+	private volatile EntitySystem[][] watchers = new EntitySystem[0][];
+
+	// Only present when using ComponentStorage.ARCHETYPE
+	private final Archetypes ARCHETYPES;
+
+	private final List<ColumnSchema> SCHEMAS = new ArrayList<>();
 
 	private boolean isPaused = false;
 
+	private int nextSystemOrder = 0;
+
+	private long tick = 0;
+
+	// Systems run serially unless given a pool; the schedule is rebuilt lazily
+	// from the plan
+	private ForkJoinPool executionPool;
+	private Schedule schedule;
+
+	private final FrameProfiler PROFILER = new FrameProfiler();
+
+	private final List<EntityListener> LISTENERS = new ArrayList<>();
+
+	private final Map<Class<?>,EventChannel<?>> CHANNELS = new HashMap<>();
+
+	// Pools of recycled components, by ComponentType id. Replaced rather than
+	// changed when a pool is added, so that pools can be found from any
+	// thread without taking the engine's lock.
+	private volatile ComponentPool<?>[] pools = new ComponentPool<?>[0];
+
+	private static final int DEFAULT_INGESTION_CAPACITY = 4096;
+
+	// Additions and removals submitted from other threads, drained each update
+	private volatile IngestionQueue ingestion = new IngestionQueue( DEFAULT_INGESTION_CAPACITY );
+
+	private final JobRunner JOBS = new JobRunner();
+
+	// Every live thread's command buffer, in the order threads first used one.
+	// Found by owner rather than through a ThreadLocal, so that pool threads
+	// never hold buffers, and through them this engine, once it is dropped;
+	// replaced rather than modified, since threads look buffers up at once.
+	private volatile CommandBuffer[] commandBuffers = new CommandBuffer[0];
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Create an engine which stores components with
+	 * {@link ComponentStorage#PER_ENTITY}
+	 */
+	public GameEngine() {
+		this( ComponentStorage.PER_ENTITY );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Create an engine which stores the components of its entities in the
+	 * given way. Entities keep their own components while outside of an
+	 * engine, whichever storage is used.
+	 *
+	 * @param storage How to store components of entities in this engine
+	 */
+	public GameEngine( ComponentStorage storage ) {
+		ARCHETYPES = storage == ComponentStorage.ARCHETYPE ? new Archetypes() : null;
+	}
+
 	//--------------------------------------------------------------------------
 
 	/**
@@ -32,21 +121,46 @@ public class GameEngine {
 	 * {@link GameSystem#onStart(GameEngine)} method and setting it to the
 	 * lowest priority.
 	 *
+	 * <p>Systems run in priority order, then in the order they were added,
+	 * except where {@link GameSystem#runsBefore(Class[])} or
+	 * {@link GameSystem#runsAfter(Class[])} requires otherwise.
+	 *
 	 * @param system The system to add
+	 *
+	 * @throws IllegalStateException If a system of the same class is already
+	 *         in the engine, or the system's dependencies would form a cycle
 	 */
 	public void add( GameSystem system ) {
-		if ( SYSTEMS.containsValue( system.getClass() )) {
+		if ( SYSTEMS.containsKey( system.getClass() )) {
 			throw new IllegalStateException(
 					system.getClass().getName() + " already exists in engine" );
-		} else {
-			if ( system.priority == Integer.MIN_VALUE ) {
-				if ( SYSTEMS.isEmpty() ) system.priority = 0;
-				else system.priority = SYSTEMS.lastKey().priority + 1;
-			}
-			SYSTEMS.put( system, system.getClass() );
 		}
 
+		if ( system.priority == Integer.MIN_VALUE ) {
+			int lowest = plan.length == 0 ? -1 : Integer.MIN_VALUE;
+			for ( GameSystem added : plan ) lowest = Math.max( lowest, added.priority );
+			system.priority = lowest + 1;
+		}
+		system.order = nextSystemOrder++;
+		SYSTEMS.put( system.getClass(), system );
+		try {
+			plan = SystemPlan.compile( SYSTEMS );
+		} catch ( IllegalStateException e ) {
+			SYSTEMS.remove( system.getClass() );
+			throw e;
+		}
+		schedule = null;
+		system.engine = this;
+
 		system.onStart( this );
+
+		if ( system instanceof EntitySystem ) {
+			EntitySystem entitySystem = (EntitySystem)system;
+			ENTITY_SYSTEMS.add( entitySystem );
+			watch( entitySystem );
+			SLOTS.stream().forEach( entitySystem::refresh );
+		}
+
 		system.resume();
 	}
 
@@ -58,8 +172,9 @@ public class GameEngine {
 	 * priority.
 	 *
 	 * @param system The system to add
-	 * @param priority The priority to set. In future releases, systems at the
-	 *                 same priority will be eligible for concurrent execution.
+	 * @param priority The priority to set. Systems at the same priority are
+	 *                 eligible for concurrent execution; see
+	 *                 {@link GameEngine#setExecutionPool(ForkJoinPool)}.
 	 */
 	public void add( GameSystem system, int priority ) {
 		system.priority = priority;
@@ -74,13 +189,295 @@ public class GameEngine {
 	 * <p>Call this from your main game loop to perform all entity updates and
 	 * rendering.
 	 *
+	 * <p>Entities given to {@link GameEngine#submit(Entity)} and
+	 * {@link GameEngine#submitRemove(Entity)} are added and removed, and then
+	 * the results of finished jobs are delivered, before any system runs.
+	 * Changes recorded in {@link GameEngine#commands()} are
+	 * applied after each system, or after each group of concurrently running
+	 * systems.
+	 *
 	 * @param deltaTime The time, in seconds, since the last update
 	 */
 	public void update( double deltaTime ) {
 		if ( isPaused ) return;
-		SYSTEMS.keySet().forEach( system -> {
+		tick++;
+
+		ingestion.drain( this );
+		JOBS.deliver();
+
+		boolean isProfiling = PROFILER.isEnabled();
+		long frameStart = isProfiling ? System.nanoTime() : 0;
+
+		if ( executionPool == null ) {
+			GameSystem[] systems = plan;
+			for ( GameSystem system : systems ) {
+				// Skips systems removed by those before them in this update
+				if ( system.engine != this ) continue;
+
+				runSystem( system, deltaTime );
+				applyCommands();
+			}
+		} else {
+			if ( schedule == null ) schedule = new Schedule( Arrays.asList( plan ));
+			schedule.run( this, deltaTime, executionPool );
+		}
+
+		if ( isProfiling ) PROFILER.recordFrame( System.nanoTime() - frameStart );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param systemType The exact class of the system to find
+	 *
+	 * @return The system of the given class in this engine, or {@code null}
+	 */
+	public <S extends GameSystem> S get( Class<S> systemType ) {
+		return systemType.cast( SYSTEMS.get( systemType ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of times this engine has updated, which is the tick
+	 *         recorded by {@link Entity#markChanged(Class)} during the
+	 *         current update
+	 */
+	public long getTick() { return tick; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Rewind or advance the tick, such as to the tick of a restored frame
+	 */
+	void setTick( long tick ) { this.tick = tick; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return This engine's profiler, which is disabled until enabled with
+	 *         {@link FrameProfiler#setEnabled(boolean)}
+	 */
+	public FrameProfiler getProfiler() { return PROFILER; }
+
+	//--------------------------------------------------------------------------
+
+	void runSystem( GameSystem system, double deltaTime ) {
+		if ( !PROFILER.isEnabled() ) {
 			system.update( this, deltaTime );
-		} );
+			return;
+		}
+
+		long start = System.nanoTime();
+		if ( system.update( this, deltaTime )) {
+			PROFILER.recordSystem( system, System.nanoTime() - start );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run systems of equal priority concurrently on the given pool, where
+	 * their declared component accesses don't conflict. Each priority finishes
+	 * before the next begins.
+	 *
+	 * <p>Systems running concurrently must not add or remove entities or
+	 * components directly, since doing so changes state shared by every
+	 * system; they should record changes in {@link GameEngine#commands()}.
+	 *
+	 * @param pool The pool to run systems on, or {@code null} to run every
+	 *             system serially on the calling thread
+	 *
+	 * @see GameSystem#reads(Class[])
+	 * @see GameSystem#writes(Class[])
+	 */
+	public void setExecutionPool( ForkJoinPool pool ) {
+		executionPool = pool;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The pool given to {@link GameEngine#setExecutionPool(ForkJoinPool)},
+	 *         or else the common pool
+	 */
+	ForkJoinPool executionPool() {
+		return executionPool != null ? executionPool : ForkJoinPool.commonPool();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Retrieve the calling thread's buffer for changes to apply at the next
+	 * sync point. Systems should use this instead of changing entities
+	 * directly when other systems may be iterating them, such as when running
+	 * concurrently.
+	 *
+	 * @return The command buffer belonging to the calling thread
+	 */
+	public CommandBuffer commands() {
+		Thread thread = Thread.currentThread();
+		for ( CommandBuffer buffer : commandBuffers ) {
+			if ( buffer.isOwnedBy( thread )) return buffer;
+		}
+
+		CommandBuffer buffer = new CommandBuffer( thread );
+		synchronized ( this ) {
+			CommandBuffer[] buffers = Arrays.copyOf( commandBuffers, commandBuffers.length + 1 );
+			buffers[buffers.length - 1] = buffer;
+			commandBuffers = buffers;
+		}
+		return buffer;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Queue an entity to be added at the start of the next
+	 * {@link GameEngine#update(double)}. Unlike {@link GameEngine#add(Entity)},
+	 * may be called from any thread, and never waits on the game loop or
+	 * other submitting threads.
+	 *
+	 * <p>The entity must not be changed by the submitting thread afterward.
+	 *
+	 * @param entity The entity to add
+	 *
+	 * @return {@code true} if the entity was queued, or {@code false} if the
+	 *         queue is full, in which case the caller should retry later
+	 */
+	public boolean submit( Entity entity ) {
+		return ingestion.offer( IngestionQueue.ADD, entity, NULL_HANDLE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Queue an entity to be removed at the start of the next
+	 * {@link GameEngine#update(double)}; may be called from any thread
+	 *
+	 * @param entity The entity to remove
+	 *
+	 * @return {@code true} if the removal was queued, or {@code false} if the
+	 *         queue is full
+	 */
+	public boolean submitRemove( Entity entity ) {
+		return ingestion.offer( IngestionQueue.REMOVE, entity, NULL_HANDLE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Queue the entity with a handle to be removed at the start of the
+	 * next {@link GameEngine#update(double)}, as by
+	 * {@link GameEngine#remove(long)}; may be called from any thread
+	 *
+	 * @param handle The handle of the entity to remove
+	 *
+	 * @return {@code true} if the removal was queued, or {@code false} if the
+	 *         queue is full
+	 */
+	public boolean submitRemove( long handle ) {
+		return ingestion.offer( IngestionQueue.REMOVE_HANDLE, null, handle );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Set how many submitted additions and removals may wait for the next
+	 * update before {@link GameEngine#submit(Entity)} and
+	 * {@link GameEngine#submitRemove(Entity)} refuse more. Must be called
+	 * before any thread submits; the default is 4096.
+	 *
+	 * @param capacity The most waiting operations; rounded up to a power of two
+	 */
+	public void setIngestionCapacity( int capacity ) {
+		ingestion = new IngestionQueue( capacity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run work too slow for one update off the game loop, such as
+	 * pathfinding, and hand its result back to the game loop at the start of
+	 * a later {@link GameEngine#update(double)}, before any system runs. May
+	 * be called from any thread, such as from a system's
+	 * {@link GameSystem#onUpdate(GameEngine, double)}.
+	 *
+	 * <p>The work must not touch entities or components which systems may be
+	 * using; it should copy what it needs beforehand, and apply its result in
+	 * {@code onResult}.
+	 *
+	 * @param owner The entity the work is for, whose removal from this engine
+	 *              cancels the job; or {@code null}
+	 * @param work The work to run, on the executor given to
+	 *             {@link GameEngine#setJobExecutor(Executor)}
+	 * @param onResult Given the work's result on the game loop; or
+	 *                 {@code null}. If the work throws, the next update
+	 *                 throws an {@link IllegalStateException} instead.
+	 *
+	 * @return The submitted job, which may be cancelled
+	 */
+	public <R> Job<R> submitJob( Entity owner, Callable<? extends R> work, Consumer<? super R> onResult ) {
+		return JOBS.submit( owner, work, onResult );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Set where jobs given to
+	 * {@link GameEngine#submitJob(Entity, Callable, Consumer)} run. By
+	 * default they run on a fixed pool of daemon threads, one fewer than the
+	 * number of processors, shared by every engine. On Java 21 or later, an
+	 * executor made by {@code Executors.newVirtualThreadPerTaskExecutor()}
+	 * gives each job a virtual thread.
+	 *
+	 * @param executor The executor to run later jobs on
+	 */
+	public void setJobExecutor( Executor executor ) {
+		JOBS.setExecutor( executor );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Limit how many job results are handed back in one update, to spread
+	 * the cost of applying them; the rest wait for following updates
+	 *
+	 * @param limit The most results delivered per update
+	 */
+	public void setJobDeliveryLimit( int limit ) {
+		JOBS.setDeliveryLimit( limit );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Apply every change recorded in every thread's {@link CommandBuffer},
+	 * and forget the buffers of threads which have died, such as pool workers
+	 * which were retired. Must only be called while no system is updating.
+	 */
+	void applyCommands() {
+		CommandBuffer[] buffers = commandBuffers;
+		int abandoned = 0;
+		for ( CommandBuffer buffer : buffers ) {
+			// Checked before applying, so nothing recorded before death is lost
+			if ( buffer.isAbandoned() ) abandoned++;
+			if ( !buffer.isEmpty() ) buffer.apply( this );
+		}
+		if ( abandoned > 0 ) forgetAbandoned();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private synchronized void forgetAbandoned() {
+		CommandBuffer[] buffers = commandBuffers;
+		CommandBuffer[] live = new CommandBuffer[buffers.length];
+		int count = 0;
+		for ( CommandBuffer buffer : buffers ) {
+			// Buffers of threads which died since applying still hold commands
+			if ( !buffer.isAbandoned() || !buffer.isEmpty() ) live[count++] = buffer;
+		}
+		commandBuffers = Arrays.copyOf( live, count );
 	}
 
 	//--------------------------------------------------------------------------
@@ -90,9 +487,23 @@ public class GameEngine {
 	 * @param system The system to remove
 	 */
 	public void remove( GameSystem system ) {
-		if ( SYSTEMS.remove( system, system.getClass() )) {
+		if ( SYSTEMS.remove( system.getClass(), system )) {
+			plan = SystemPlan.compile( SYSTEMS );
+			schedule = null;
+			system.engine = null;
 			system.pause();
-			system.onStop( this );
+			try {
+				system.onStop( this );
+			} finally {
+				PROFILER.forget( system );
+
+				if ( system instanceof EntitySystem ) {
+					EntitySystem entitySystem = (EntitySystem)system;
+					ENTITY_SYSTEMS.remove( entitySystem );
+					unwatch( entitySystem );
+					entitySystem.clear();
+				}
+			}
 		}
 	}
 
@@ -103,10 +514,85 @@ public class GameEngine {
 	 * @param systemType The type of the system to remove
 	 */
 	public void remove( Class<? extends GameSystem> systemType ) {
-		SYSTEMS.entrySet().stream()
-				.filter( entry -> entry.getValue() == systemType )
-				.map( Map.Entry::getKey )
-				.forEach( this::remove );
+		GameSystem system = SYSTEMS.get( systemType );
+		if ( system != null ) remove( system );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Start recycling components of a type, or get the existing pool for
+	 * the type
+	 *
+	 * @param componentType The class of component to pool
+	 * @param factory Makes new components when the pool is empty
+	 * @param reset Clears a component returned to the pool; or {@code null}
+	 * @param maxSize The most free components to keep, if the pool is new
+	 *
+	 * @return The pool for components of the given type
+	 *
+	 * @see ComponentPool
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized <T> ComponentPool<T> pool( Class<T> componentType, Supplier<? extends T> factory,
+	                                               Consumer<? super T> reset, int maxSize ) {
+		int typeId = ComponentType.idOf( componentType );
+		ComponentPool<?>[] pools = this.pools;
+		if ( typeId < pools.length && pools[typeId] != null ) return (ComponentPool<T>)pools[typeId];
+
+		ComponentPool<T> pool = new ComponentPool<>( componentType, factory, reset, maxSize );
+		pools = Arrays.copyOf( pools, Math.max( pools.length, typeId + 1 ));
+		pools[typeId] = pool;
+		this.pools = pools;
+		return pool;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType The class of a pooled component
+	 *
+	 * @return The existing pool for components of the given type
+	 *
+	 * @throws IllegalStateException If the type has not been pooled with
+	 *         {@link GameEngine#pool(Class, Supplier, Consumer, int)}
+	 */
+	@SuppressWarnings( "unchecked" )
+	public <T> ComponentPool<T> pool( Class<T> componentType ) {
+		int typeId = ComponentType.idOf( componentType );
+		ComponentPool<?>[] pools = this.pools;
+		if ( typeId >= pools.length || pools[typeId] == null ) {
+			throw new IllegalStateException( "No pool for " + componentType.getName() );
+		}
+		return (ComponentPool<T>)pools[typeId];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Take a recycled component from a pool, or a new one if none are free.
+	 * Only the pool's own lock is taken, so threads acquiring components of
+	 * different types do not wait for each other or for the engine.
+	 *
+	 * @param componentType The class of a pooled component
+	 *
+	 * @return A component ready to add to an entity
+	 *
+	 * @throws IllegalStateException If the type has not been pooled with
+	 *         {@link GameEngine#pool(Class, Supplier, Consumer, int)}
+	 */
+	public <T> T acquire( Class<T> componentType ) {
+		return pool( componentType ).acquire();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Return a component removed from an entity to its pool, if pooled
+	 */
+	void release( int typeId, Object component ) {
+		ComponentPool<?>[] pools = this.pools;
+		if ( typeId < pools.length && pools[typeId] != null ) pools[typeId].releaseObject( component );
 	}
 
 	//--------------------------------------------------------------------------
@@ -114,21 +600,191 @@ public class GameEngine {
 	/**
 	 * <p>Add an entity to the engine
 	 * @param entity Entity to add
+	 *
+	 * @throws IllegalStateException If the entity is in another engine
 	 */
 	public void add( Entity entity ) {
+		if ( entity.engine == this ) return;
+		if ( entity.engine != null ) {
+			throw new IllegalStateException( "Entity already belongs to another engine" );
+		}
+
 		entity.engine = this;
-		ENTITIES.add( entity );
+		entity.slot = SLOTS.allocate( entity );
+		if ( entity.slot == SLOTS.limit() - 1 ) {
+			for ( int i = 0; i < SCHEMAS.size(); i++ ) SCHEMAS.get( i ).ensureCapacity( SLOTS.limit() );
+		}
+
+		if ( ARCHETYPES != null ) entity.store( ARCHETYPES );
+		refresh( entity );
+
+		for ( int i = 0; i < LISTENERS.size(); i++ ) {
+			LISTENERS.get( i ).onEntityAdded( entity );
+		}
 	}
 
 	//--------------------------------------------------------------------------
 
 	/**
 	 * <p>Remove an entity from the engine
+	 *
+	 * <p>Components of types pooled with
+	 * {@link GameEngine#pool(Class, Supplier, Consumer, int)} are taken from
+	 * the entity and returned to their pools.
+	 *
 	 * @param entity Entity to remove
 	 */
 	public void remove( Entity entity ) {
+		if ( entity.engine != this ) return;
+
+		detach( entity );
+
+		ComponentPool<?>[] pools = this.pools;
+		if ( pools.length == 0 ) return;
+
+		Bits signature = entity.SIGNATURE;
+		for ( int id = signature.nextSetBit( 0 ); id >= 0 && id < pools.length; id = signature.nextSetBit( id + 1 )) {
+			if ( pools[id] != null ) pools[id].releaseObject( entity.take( id ));
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove an entity from the engine, letting it keep every component,
+	 * such as to add it again later
+	 */
+	void detach( Entity entity ) {
+		if ( entity.engine != this ) return;
+
+		for ( int i = 0; i < LISTENERS.size(); i++ ) {
+			LISTENERS.get( i ).onEntityRemoved( entity );
+		}
+		JOBS.cancelOwnedBy( entity );
+
+		if ( entity.archetype != null ) entity.unstore();
+		for ( int i = 0; i < SCHEMAS.size(); i++ ) {
+			ColumnSchema schema = SCHEMAS.get( i );
+			if ( schema.has( entity )) schema.release( entity );
+		}
+
 		entity.engine = null;
-		ENTITIES.remove( entity );
+		refresh( entity );
+
+		SLOTS.free( entity.slot );
+		entity.slot = -1;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add a new, empty entity to the engine, reusing one which was removed
+	 * with {@link GameEngine#remove(long)} if possible
+	 *
+	 * <p>Entities made this way belong to the engine, and are recycled once
+	 * removed by handle; only their handle should be kept.
+	 *
+	 * @return The handle of the new entity
+	 */
+	public long create() {
+		Entity entity = RECYCLED.poll();
+		if ( entity == null ) {
+			entity = new Entity();
+			entity.isRecyclable = true;
+		}
+
+		add( entity );
+		return SLOTS.handleOf( entity.slot );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove an entity from the engine by its handle. Entities made with
+	 * {@link GameEngine#create()} are emptied and kept for reuse.
+	 *
+	 * @param handle The handle of the entity to remove
+	 *
+	 * @return {@code true} if an entity was removed, or {@code false} if the
+	 *         handle no longer refers to one
+	 */
+	public boolean remove( long handle ) {
+		Entity entity = SLOTS.get( handle );
+		if ( entity == null ) return false;
+
+		remove( entity );
+		if ( entity.isRecyclable ) {
+			entity.clear();
+			RECYCLED.push( entity );
+		}
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param handle An entity handle
+	 *
+	 * @return The entity the handle refers to, or {@code null} if that entity
+	 *         has been removed from the engine
+	 */
+	public Entity get( long handle ) {
+		return SLOTS.get( handle );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param handle An entity handle
+	 *
+	 * @return {@code true} if the handle refers to an entity in this engine,
+	 *         else {@code false}
+	 */
+	public boolean isAlive( long handle ) {
+		return SLOTS.get( handle ) != null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	long handleOf( Entity entity ) {
+		return SLOTS.handleOf( entity.slot );
+	}
+
+	//--------------------------------------------------------------------------
+
+	Slots slots() { return SLOTS; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add a {@link ColumnSchema} to the engine, so that entities in this
+	 * engine can store its columns
+	 *
+	 * @param schema The schema to add
+	 *
+	 * @throws IllegalStateException If the schema already belongs to an engine
+	 */
+	public void add( ColumnSchema schema ) {
+		if ( schema.engine != null ) {
+			throw new IllegalStateException(
+					schema.getClass().getName() + " already belongs to an engine" );
+		}
+
+		schema.engine = this;
+		schema.ensureCapacity( SLOTS.limit() );
+		SCHEMAS.add( schema );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The schema of the given class in this engine, or {@code null}
+	 */
+	ColumnSchema schemaOf( Class<?> schemaType ) {
+		for ( int i = 0; i < SCHEMAS.size(); i++ ) {
+			if ( SCHEMAS.get( i ).getClass() == schemaType ) return SCHEMAS.get( i );
+		}
+		return null;
 	}
 
 	//--------------------------------------------------------------------------
@@ -143,9 +799,9 @@ public class GameEngine {
 	 */
 	public void pause() {
 		if ( !isPaused ) {
-			SYSTEMS.keySet().forEach( system -> {
+			for ( GameSystem system : plan ) {
 				if ( !system.isPaused ) system.onPause();
-			} );
+			}
 		}
 		isPaused = true;
 	}
@@ -158,9 +814,9 @@ public class GameEngine {
 	 */
 	public void resume() {
 		if ( isPaused ) {
-			SYSTEMS.keySet().forEach( system -> {
+			for ( GameSystem system : plan ) {
 				if ( !system.isPaused ) system.onResume();
-			} );
+			}
 		}
 		isPaused = false;
 	}
@@ -168,7 +824,179 @@ public class GameEngine {
 	//--------------------------------------------------------------------------
 
 	public Stream<Entity> entityStream() {
-		return ENTITIES.stream();
+		return SLOTS.stream();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Find the tables holding every entity that has all of the given
+	 * component types, for iterating their components as dense arrays
+	 *
+	 * @param componentTypes Classes of the components an entity must have
+	 *
+	 * @return Every non-empty {@link Archetype} including all of the given types
+	 *
+	 * @throws IllegalStateException If this engine does not use
+	 *         {@link ComponentStorage#ARCHETYPE}
+	 */
+	public Stream<Archetype> archetypeStream( Class<?>... componentTypes ) {
+		if ( ARCHETYPES == null ) {
+			throw new IllegalStateException( "Engine does not use " + ComponentStorage.ARCHETYPE );
+		}
+
+		Bits mask = ComponentType.maskOf( componentTypes );
+		return ARCHETYPES.ALL.stream()
+				.filter( archetype -> archetype.size() > 0 )
+				.filter( archetype -> archetype.SIGNATURE.containsAll( mask ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Re-evaluate which {@link EntitySystem}s should handle an entity, after
+	 * it is added or removed, or its set of components changes
+	 */
+	void refresh( Entity entity ) {
+		for ( int i = 0; i < ENTITY_SYSTEMS.size(); i++ ) {
+			ENTITY_SYSTEMS.get( i ).refresh( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Tell systems and listeners that an entity in this engine has gained
+	 * or lost a component
+	 */
+	void onComponentsChanged( Entity entity ) {
+		refresh( entity );
+		for ( int i = 0; i < LISTENERS.size(); i++ ) {
+			LISTENERS.get( i ).onComponentsChanged( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void watch( EntitySystem system ) {
+		Bits watched = system.WATCHED;
+		EntitySystem[][] copy = watchers;
+		for ( int id = watched.nextSetBit( 0 ); id >= 0; id = watched.nextSetBit( id + 1 )) {
+			if ( id >= copy.length ) {
+				int length = copy.length;
+				copy = Arrays.copyOf( copy, id + 1 );
+				Arrays.fill( copy, length, copy.length, new EntitySystem[0] );
+			} else if ( copy == watchers ) {
+				copy = copy.clone();
+			}
+
+			EntitySystem[] systems = Arrays.copyOf( copy[id], copy[id].length + 1 );
+			systems[systems.length - 1] = system;
+			copy[id] = systems;
+		}
+		watchers = copy;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void unwatch( EntitySystem system ) {
+		EntitySystem[][] copy = watchers.clone();
+		for ( int id = 0; id < copy.length; id++ ) {
+			EntitySystem[] systems = copy[id];
+			for ( int i = 0; i < systems.length; i++ ) {
+				if ( systems[i] != system ) continue;
+
+				EntitySystem[] remaining = new EntitySystem[systems.length - 1];
+				System.arraycopy( systems, 0, remaining, 0, i );
+				System.arraycopy( systems, i + 1, remaining, i, remaining.length - i );
+				copy[id] = remaining;
+				break;
+			}
+		}
+		watchers = copy;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Tell systems watching a component type, and listeners, that an
+	 * entity's component of that type was added or modified. May be called
+	 * from several threads at once; each system collects changes under its
+	 * own lock.
+	 */
+	void onComponentChanged( Entity entity, int typeId ) {
+		EntitySystem[][] watchers = this.watchers;
+		if ( typeId < watchers.length ) {
+			for ( EntitySystem system : watchers[typeId] ) system.onChanged( entity );
+		}
+
+		for ( int i = 0; i < LISTENERS.size(); i++ ) {
+			LISTENERS.get( i ).onComponentModified( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Start notifying a listener of changes to entities in this engine
+	 *
+	 * @param listener The listener to add
+	 */
+	public void addListener( EntityListener listener ) {
+		LISTENERS.add( listener );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop notifying a listener of changes to entities in this engine
+	 *
+	 * @param listener The listener to remove
+	 */
+	public void removeListener( EntityListener listener ) {
+		LISTENERS.remove( listener );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Get the channel for events of a type, creating it if this is the first
+	 * request. Channels are usually requested in
+	 * {@link GameSystem#onStart(GameEngine)}, by both publishers and readers.
+	 *
+	 * @param eventType The class of event carried by the channel
+	 * @param factory Makes the event instances to reuse, if the channel is new
+	 * @param capacity The number of events kept, if the channel is new
+	 *
+	 * @return The channel for events of the given type
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized <E> EventChannel<E> channel( Class<E> eventType, Supplier<? extends E> factory, int capacity ) {
+		EventChannel<E> channel = (EventChannel<E>)CHANNELS.get( eventType );
+		if ( channel == null ) {
+			channel = new EventChannel<>( factory, capacity );
+			CHANNELS.put( eventType, channel );
+		}
+		return channel;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param eventType The class of event carried by the channel
+	 *
+	 * @return The existing channel for events of the given type
+	 *
+	 * @throws IllegalStateException If no such channel has been created with
+	 *         {@link GameEngine#channel(Class, Supplier, int)}
+	 */
+	@SuppressWarnings( "unchecked" )
+	public synchronized <E> EventChannel<E> channel( Class<E> eventType ) {
+		EventChannel<E> channel = (EventChannel<E>)CHANNELS.get( eventType );
+		if ( channel == null ) {
+			throw new IllegalStateException( "No channel for " + eventType.getName() );
+		}
+		return channel;
 	}
 
 	//--------------------------------------------------------------------------
@@ -0,0 +1,208 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+//==============================================================================
+/**
+ * <p>Drives a {@link GameEngine} at a fixed simulation rate
+ *
+ * <p>Real time is accumulated between frames and spent in whole steps of
+ * {@code 1 / stepsPerSecond} seconds, so every call to
+ * {@link GameEngine#update(double)} receives the same delta. If the engine
+ * falls behind, at most {@link GameLoop#setMaxCatchUpSteps(int)} steps are
+ * run in one frame and the rest of the backlog is dropped, so a slow frame
+ * cannot snowball into ever slower ones.
+ *
+ * <p>An optional render engine is updated once per frame with the real time
+ * elapsed. Its systems can use {@link GameLoop#getAlpha()} to interpolate
+ * between the last two simulation steps.
+ *
+ * <pre>
+ * GameLoop loop = new GameLoop( simulation, 60 );
+ * loop.setRenderEngine( rendering );
+ * loop.run();
+ * </pre>
+ */
+public class GameLoop {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>How a {@link GameLoop} waits for its next step to be due
+	 */
+	public enum WaitStrategy {
+		/** Park the thread until the step is due; uses the least CPU */
+		SLEEP,
+
+		/** Repeatedly yield the thread until the step is due */
+		YIELD,
+
+		/** Busy-wait until the step is due; the most precise, but occupies a core */
+		SPIN
+	}
+
+	//--------------------------------------------------------------------------
+
+	private final GameEngine ENGINE;
+
+	private final long STEP_NANOS;
+	private final double STEP_SECONDS;
+
+	private GameEngine renderEngine;
+	private WaitStrategy waitStrategy = WaitStrategy.SLEEP;
+	private int maxCatchUpSteps = 5;
+
+	private long lastTime;
+	private long accumulator;
+	private boolean isStarted = false;
+	private double alpha = 0;
+
+	private volatile boolean isRunning = false;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param engine The engine to update at a fixed rate
+	 * @param stepsPerSecond How many times per second to update the engine
+	 */
+	public GameLoop( GameEngine engine, double stepsPerSecond ) {
+		if ( stepsPerSecond <= 0 ) throw new IllegalArgumentException( "Non-positive step rate: " + stepsPerSecond );
+
+		ENGINE = engine;
+		STEP_NANOS = Math.round( TimeUnit.SECONDS.toNanos( 1 ) / stepsPerSecond );
+		STEP_SECONDS = STEP_NANOS / (double)TimeUnit.SECONDS.toNanos( 1 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param engine An engine to update once per frame, after any simulation
+	 *               steps, with the real time elapsed; or {@code null} for none
+	 */
+	public void setRenderEngine( GameEngine engine ) {
+		renderEngine = engine;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param strategy How to wait between frames when running ahead of the
+	 *                 step rate. Defaults to {@link WaitStrategy#SLEEP}.
+	 */
+	public void setWaitStrategy( WaitStrategy strategy ) {
+		waitStrategy = strategy;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param steps The most simulation steps to run in a single frame.
+	 *              Defaults to 5.
+	 */
+	public void setMaxCatchUpSteps( int steps ) {
+		if ( steps < 1 ) throw new IllegalArgumentException( "Must allow at least one step: " + steps );
+		maxCatchUpSteps = steps;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The fixed delta, in seconds, given to each simulation step
+	 */
+	public double getStepTime() { return STEP_SECONDS; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return How far, from {@code 0} to {@code 1}, real time has progressed
+	 *         from the last simulation step towards the next one
+	 */
+	public double getAlpha() { return alpha; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run frames on the calling thread until {@link GameLoop#stop()} is
+	 * called
+	 */
+	public void run() {
+		isRunning = true;
+		while ( isRunning ) {
+			tick( System.nanoTime() );
+			waitForStep();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Make {@link GameLoop#run()} return after its current frame
+	 */
+	public void stop() {
+		isRunning = false;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run a single frame: as many simulation steps as are due, then the
+	 * render engine if there is one. Useful when something else, such as a
+	 * windowing toolkit, owns the main loop.
+	 *
+	 * @param nowNanos The current time, from {@link System#nanoTime()}
+	 *
+	 * @return The number of simulation steps run
+	 */
+	public int tick( long nowNanos ) {
+		if ( !isStarted ) {
+			lastTime = nowNanos;
+			isStarted = true;
+		}
+
+		long elapsed = nowNanos - lastTime;
+		lastTime = nowNanos;
+		accumulator += elapsed;
+
+		int steps = 0;
+		while ( accumulator >= STEP_NANOS && steps < maxCatchUpSteps ) {
+			ENGINE.update( STEP_SECONDS );
+			accumulator -= STEP_NANOS;
+			steps++;
+		}
+
+		// Too far behind to catch up; drop the backlog rather than spiral
+		if ( accumulator >= STEP_NANOS ) accumulator %= STEP_NANOS;
+
+		alpha = accumulator / (double)STEP_NANOS;
+		if ( renderEngine != null ) {
+			renderEngine.update( elapsed / (double)TimeUnit.SECONDS.toNanos( 1 ));
+		}
+
+		return steps;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void waitForStep() {
+		long due = lastTime + STEP_NANOS - accumulator;
+
+		switch ( waitStrategy ) {
+			case SLEEP:
+				for ( long remaining = due - System.nanoTime(); remaining > 0 && isRunning; remaining = due - System.nanoTime() ) {
+					LockSupport.parkNanos( remaining );
+				}
+				break;
+
+			case YIELD:
+				while ( System.nanoTime() < due && isRunning ) Thread.yield();
+				break;
+
+			case SPIN:
+				while ( System.nanoTime() < due && isRunning ) {}
+				break;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
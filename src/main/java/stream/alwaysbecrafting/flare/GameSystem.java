@@ -1,11 +1,27 @@
 package stream.alwaysbecrafting.flare;
 
+import java.util.HashSet;
+import java.util.Set;
+
 //==============================================================================
 /**
  * <p>Superclass for game systems which do some work on the main loop
  *
  * <p>If you need to iterate over a group of game entities each cycle, consider
  * subclassing {@link EntitySystem} instead.
+ *
+ * <p>Systems which call {@link GameSystem#reads(Class[])} or
+ * {@link GameSystem#writes(Class[])} to declare the components they use may
+ * be run concurrently with other systems at the same priority; see
+ * {@link GameEngine#setExecutionPool(java.util.concurrent.ForkJoinPool)}.
+ *
+ * <p>Systems which need not run on every update may call
+ * {@link GameSystem#setInterval(int)} or {@link GameSystem#setRate(double)};
+ * they keep their place in priority order on the updates they run.
+ *
+ * <p>Systems which must run before or after particular others, whatever
+ * their priorities, may say so with {@link GameSystem#runsBefore(Class[])}
+ * and {@link GameSystem#runsAfter(Class[])}.
  */
 public abstract class GameSystem implements Comparable<GameSystem> {
 	//--------------------------------------------------------------------------
@@ -13,11 +29,143 @@ public abstract class GameSystem implements Comparable<GameSystem> {
 	int priority = Integer.MIN_VALUE;
 	boolean isPaused = true;
 
+	// Breaks ties between systems of equal priority, in the order they're added
+	int order;
+
+	// The engine this system is added to, or null
+	GameEngine engine;
+
+	// Types of systems this one must run before or after, when both are added
+	final Set<Class<? extends GameSystem>> BEFORE = new HashSet<>();
+	final Set<Class<? extends GameSystem>> AFTER = new HashSet<>();
+
+	// Component types this system accesses, for concurrent scheduling
+	private final Bits READS  = new Bits();
+	private final Bits WRITES = new Bits();
+	private boolean declaresAccess = false;
+
+	// Created by the engine's FrameProfiler while profiling is enabled
+	SystemProfile profile;
+
+	// Runs every interval updates, or at most once each period of time if set
+	private int interval = 1;
+	private int updatesSinceRun = 0;
+	private double period = 0;
+	private double periodTime = 0;
+
+	// Time given to updates since this system last ran
+	private double elapsedTime = 0;
+
 	//--------------------------------------------------------------------------
 	//--------------------------------------------------------------------------
 
 	@Override public int compareTo( GameSystem other ) {
-		return Integer.compare( priority, other.priority );
+		int result = Integer.compare( priority, other.priority );
+		return result != 0 ? result : Integer.compare( order, other.order );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Declare component types which this system reads but does not modify
+	 *
+	 * <p>A system which declares none of its accesses is assumed to touch
+	 * everything, and will never run concurrently with another system.
+	 * Declarations must be made before the system is added to a
+	 * {@link GameEngine}; a good place is in a constructor.
+	 *
+	 * @param componentTypes The components read by this system
+	 */
+	protected void reads( Class<?>... componentTypes ) {
+		declaresAccess = true;
+		for ( Class<?> type : componentTypes ) READS.set( ComponentType.idOf( type ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Declare component types which this system modifies
+	 *
+	 * <p>A system which declares none of its accesses is assumed to touch
+	 * everything, and will never run concurrently with another system.
+	 * Declarations must be made before the system is added to a
+	 * {@link GameEngine}; a good place is in a constructor.
+	 *
+	 * @param componentTypes The components written by this system
+	 */
+	protected void writes( Class<?>... componentTypes ) {
+		declaresAccess = true;
+		for ( Class<?> type : componentTypes ) WRITES.set( ComponentType.idOf( type ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run this system before systems of the given types on every update,
+	 * whatever their priorities, while they are in the same engine.
+	 * Declarations must be made before the system is added to a
+	 * {@link GameEngine}.
+	 *
+	 * @param systemTypes The exact classes of the systems to run before
+	 *
+	 * @see GameEngine#add(GameSystem)
+	 */
+	@SafeVarargs
+	protected final void runsBefore( Class<? extends GameSystem>... systemTypes ) {
+		for ( Class<? extends GameSystem> type : systemTypes ) BEFORE.add( type );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run this system after systems of the given types on every update,
+	 * whatever their priorities, while they are in the same engine.
+	 * Declarations must be made before the system is added to a
+	 * {@link GameEngine}.
+	 *
+	 * @param systemTypes The exact classes of the systems to run after
+	 *
+	 * @see GameEngine#add(GameSystem)
+	 */
+	@SafeVarargs
+	protected final void runsAfter( Class<? extends GameSystem>... systemTypes ) {
+		for ( Class<? extends GameSystem> type : systemTypes ) AFTER.add( type );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run this system on only one of every given number of updates. Its
+	 * {@link GameSystem#onUpdate(GameEngine, double)} is given the total time
+	 * of the updates since it last ran.
+	 *
+	 * @param updates The number of updates per run; {@code 1} runs this system
+	 *                on every update
+	 */
+	public void setInterval( int updates ) {
+		if ( updates < 1 ) throw new IllegalArgumentException( "Interval must be positive: " + updates );
+		interval = updates;
+		period = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Run this system at most a given number of times per second of the
+	 * time given to {@link GameEngine#update(double)}, however often the
+	 * engine updates. Its {@link GameSystem#onUpdate(GameEngine, double)} is
+	 * given the total time of the updates since it last ran.
+	 *
+	 * <p>Runs are never repeated within one update to catch up; runs missed
+	 * during a long update are dropped.
+	 *
+	 * @param hertz Runs per second, or {@code 0} to run on every update
+	 */
+	public void setRate( double hertz ) {
+		if ( !( hertz >= 0 )) throw new IllegalArgumentException( "Rate must not be negative: " + hertz );
+		period = hertz == 0 ? 0 : 1 / hertz;
+		periodTime = 0;
+		interval = 1;
 	}
 
 	//--------------------------------------------------------------------------
@@ -67,13 +215,14 @@ public abstract class GameSystem implements Comparable<GameSystem> {
 	 * <p>Called when this system should execute its main game loop behavior.
 	 * This is where the system will do most of its work, and is called once for
 	 * each time {@link GameEngine#update(double)} is called on the attached
-	 * {@link GameEngine}.
+	 * {@link GameEngine}, unless limited by {@link GameSystem#setInterval(int)}
+	 * or {@link GameSystem#setRate(double)}.
 	 *
 	 * @param engine The engine this update is occurring in
 	 *
 	 * @param deltaTime The time given to {@link GameEngine#update(double)} for
-	 *                  this iteration of the game loop; ostensibly, the time
-	 *                  between the previous loop and the current one
+	 *                  this iteration of the game loop, plus that of any
+	 *                  updates skipped since this system last ran
 	 */
 	public void onUpdate( GameEngine engine, double deltaTime ) {}
 
@@ -100,10 +249,62 @@ public abstract class GameSystem implements Comparable<GameSystem> {
 	//--------------------------------------------------------------------------
 	//--------------------------------------------------------------------------
 
-	void update( GameEngine engine, double deltaTime ) {
+	/**
+	 * <p>Run this system if it is due
+	 *
+	 * @return {@code true} if the system ran, else {@code false}
+	 */
+	boolean update( GameEngine engine, double deltaTime ) {
+		elapsedTime += deltaTime;
+
+		if ( period > 0 ) {
+			periodTime += deltaTime;
+			if ( periodTime < period ) return false;
+			periodTime = ( periodTime - period ) % period;
+		} else if ( ++updatesSinceRun < interval ) {
+			return false;
+		}
+
+		double time = elapsedTime;
+		updatesSinceRun = 0;
+		elapsedTime = 0;
+		run( engine, time );
+		return true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	void run( GameEngine engine, double deltaTime ) {
 		onUpdate( engine, deltaTime );
 	}
 
 	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if this system and {@code other} may not run at the
+	 *         same time, because either writes a component the other uses, or
+	 *         either has not declared what it uses
+	 */
+	boolean conflictsWith( GameSystem other ) {
+		if ( !declaresAccess || !other.declaresAccess ) return true;
+		return WRITES.intersects( other.WRITES )
+				|| WRITES.intersects( other.READS )
+				|| READS.intersects( other.WRITES );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if either this system or {@code other} must run
+	 *         before the other
+	 */
+	boolean isOrderedWith( GameSystem other ) {
+		return BEFORE.contains( other.getClass() )
+				|| AFTER.contains( other.getClass() )
+				|| other.BEFORE.contains( getClass() )
+				|| other.AFTER.contains( getClass() );
+	}
+
+	//--------------------------------------------------------------------------
 }
 //------------------------------------------------------------------------------
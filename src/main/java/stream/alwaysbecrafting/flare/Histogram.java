@@ -0,0 +1,99 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+
+//==============================================================================
+/**
+ * <p>A rolling window of the most recent samples of some measurement, such as
+ * a duration in nanoseconds, summarized by percentile
+ *
+ * <p>Recording is constant time and does not allocate; the cost of sorting is
+ * paid only when a percentile is read. Safe to record and read from
+ * different threads.
+ */
+public final class Histogram {
+	//--------------------------------------------------------------------------
+
+	private final long[] SAMPLES;
+	private final long[] SORTED;
+
+	private int next = 0;
+	private int size = 0;
+	private long total = 0;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param window The number of most recent samples to keep
+	 */
+	public Histogram( int window ) {
+		if ( window < 1 ) throw new IllegalArgumentException( "Window must hold at least one sample: " + window );
+		SAMPLES = new long[window];
+		SORTED = new long[window];
+	}
+
+	//--------------------------------------------------------------------------
+
+	public synchronized void record( long sample ) {
+		SAMPLES[next] = sample;
+		next = ( next + 1 ) % SAMPLES.length;
+		if ( size < SAMPLES.length ) size++;
+		total++;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of samples recorded since creation or the last
+	 *         {@link Histogram#clear()}, including those no longer in the window
+	 */
+	public synchronized long count() { return total; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param percentile From {@code 0} to {@code 100}
+	 *
+	 * @return The sample at the given percentile of the current window, or
+	 *         {@code 0} if nothing has been recorded
+	 */
+	public synchronized long percentile( double percentile ) {
+		if ( size == 0 ) return 0;
+
+		System.arraycopy( SAMPLES, 0, SORTED, 0, size );
+		Arrays.sort( SORTED, 0, size );
+		int index = (int)Math.ceil( percentile / 100 * size ) - 1;
+		return SORTED[Math.max( 0, Math.min( size - 1, index ))];
+	}
+
+	//--------------------------------------------------------------------------
+
+	public long p50() { return percentile( 50 ); }
+
+	//--------------------------------------------------------------------------
+
+	public long p99() { return percentile( 99 ); }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The largest sample in the current window, or {@code 0} if
+	 *         nothing has been recorded
+	 */
+	public synchronized long max() {
+		long max = 0;
+		for ( int i = 0; i < size; i++ ) max = Math.max( max, SAMPLES[i] );
+		return max;
+	}
+
+	//--------------------------------------------------------------------------
+
+	public synchronized void clear() {
+		next = 0;
+		size = 0;
+		total = 0;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
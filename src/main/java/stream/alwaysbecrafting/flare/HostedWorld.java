@@ -0,0 +1,151 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>A {@link GameEngine} ticked by a {@link WorldHost}, with measurements of
+ * how it is keeping up
+ */
+public final class HostedWorld {
+	//--------------------------------------------------------------------------
+
+	private static final int WINDOW = 256;
+
+	// Weight of the newest tick in the running average of load
+	private static final double LOAD_SMOOTHING = 0.05;
+
+	private final WorldHost HOST;
+	private final GameEngine ENGINE;
+	private final double STEP_SECONDS;
+	final long PERIOD_NANOS;
+
+	private final Histogram UPDATE_TIME = new Histogram( WINDOW );
+	private final Histogram LATENESS = new Histogram( WINDOW );
+
+	// When the next tick is due, by System.nanoTime()
+	volatile long deadline;
+
+	private volatile boolean isRemoved = false;
+	private volatile long ticks = 0;
+	private volatile long droppedTicks = 0;
+	private volatile double load = 0;
+	private volatile RuntimeException failure;
+
+	//--------------------------------------------------------------------------
+
+	HostedWorld( WorldHost host, GameEngine engine, double ticksPerSecond, long firstDeadline ) {
+		HOST = host;
+		ENGINE = engine;
+		STEP_SECONDS = 1 / ticksPerSecond;
+		PERIOD_NANOS = Math.max( 1, (long)( 1e9 / ticksPerSecond ));
+		deadline = firstDeadline;
+	}
+
+	//--------------------------------------------------------------------------
+
+	public GameEngine getEngine() { return ENGINE; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The time given to each {@link GameEngine#update(double)}, in
+	 *         seconds
+	 */
+	public double getStepTime() { return STEP_SECONDS; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of updates run so far
+	 */
+	public long getTicks() { return ticks; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of updates skipped because the world fell too far
+	 *         behind; see {@link WorldHost#setMaxCatchUpTicks(int)}
+	 */
+	public long getDroppedTicks() { return droppedTicks; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Time taken by each recent update, in nanoseconds
+	 */
+	public Histogram getUpdateTime() { return UPDATE_TIME; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Time each recent update started after it was due, in
+	 *         nanoseconds
+	 */
+	public Histogram getLateness() { return LATENESS; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return A running average of the fraction of each tick period spent
+	 *         updating; above {@code 1}, the world cannot keep its rate even
+	 *         with a core to itself
+	 */
+	public double getLoad() { return load; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The exception thrown by an update, which removed this world from
+	 *         its host; or {@code null}
+	 */
+	public RuntimeException getFailure() { return failure; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} while this world is still ticked by its host
+	 */
+	public boolean isHosted() { return !isRemoved; }
+
+	//--------------------------------------------------------------------------
+
+	void markRemoved() { isRemoved = true; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Update the engine once, on a pool thread, then schedule the next tick
+	 */
+	void tick( int maxCatchUpTicks ) {
+		if ( isRemoved ) return;
+
+		long start = System.nanoTime();
+		LATENESS.record( Math.max( 0, start - deadline ));
+
+		try {
+			ENGINE.update( STEP_SECONDS );
+		} catch ( RuntimeException e ) {
+			failure = e;
+			HOST.remove( this );
+			return;
+		}
+
+		long end = System.nanoTime();
+		long elapsed = end - start;
+		UPDATE_TIME.record( elapsed );
+		ticks++;
+		load += ( (double)elapsed / PERIOD_NANOS - load ) * LOAD_SMOOTHING;
+
+		long next = deadline + PERIOD_NANOS;
+		long behind = end - next;
+		if ( behind > PERIOD_NANOS * maxCatchUpTicks ) {
+			droppedTicks += behind / PERIOD_NANOS;
+			next = end;
+		}
+		deadline = next;
+
+		HOST.schedule( this );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,122 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+//==============================================================================
+/**
+ * <p>A bounded queue of entity additions and removals, offered by any number of
+ * threads and drained by the thread updating a {@link GameEngine}
+ *
+ * <p>Each cell of the ring carries a sequence number which tells producers
+ * when it is free and the consumer when it is filled, so producers only
+ * compete with each other to claim cells, and never wait on the consumer.
+ * Offering to a full queue fails rather than blocking.
+ */
+final class IngestionQueue {
+	//--------------------------------------------------------------------------
+
+	static final byte ADD = 0;
+	static final byte REMOVE = 1;
+	static final byte REMOVE_HANDLE = 2;
+
+	private final int MASK;
+	private final byte[] OPS;
+	private final Entity[] ENTITIES;
+	private final long[] HANDLES;
+
+	// A cell is free to claim at position p when its sequence is p, and filled
+	// when it is p + 1
+	private final AtomicLongArray SEQUENCES;
+
+	// The next position to claim, shared by producers
+	private final AtomicLong TAIL = new AtomicLong();
+
+	// The next position to drain, used only by the consumer
+	private long head = 0;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param capacity The most operations held at once; rounded up to a power
+	 *                 of two
+	 */
+	IngestionQueue( int capacity ) {
+		if ( capacity < 1 ) throw new IllegalArgumentException( "Capacity must be positive: " + capacity );
+
+		int size = Integer.highestOneBit( capacity );
+		if ( size < capacity ) size <<= 1;
+
+		MASK = size - 1;
+		OPS = new byte[size];
+		ENTITIES = new Entity[size];
+		HANDLES = new long[size];
+		SEQUENCES = new AtomicLongArray( size );
+		for ( int i = 0; i < size; i++ ) SEQUENCES.set( i, i );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Queue an operation; safe to call from any thread
+	 *
+	 * @return {@code true} if the operation was queued, or {@code false} if
+	 *         the queue is full
+	 */
+	boolean offer( byte op, Entity entity, long handle ) {
+		long tail = TAIL.get();
+		while ( true ) {
+			int index = (int)tail & MASK;
+			long difference = SEQUENCES.get( index ) - tail;
+
+			if ( difference == 0 ) {
+				if ( TAIL.compareAndSet( tail, tail + 1 )) {
+					OPS[index] = op;
+					ENTITIES[index] = entity;
+					HANDLES[index] = handle;
+					SEQUENCES.lazySet( index, tail + 1 );
+					return true;
+				}
+			} else if ( difference < 0 ) {
+				// The cell still holds an operation from a lap ago
+				return false;
+			}
+			tail = TAIL.get();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Apply queued operations to an engine, in the order they were claimed;
+	 * must only be called by the thread updating the engine. Stops after one
+	 * lap of the ring, so that busy producers cannot hold up the update.
+	 *
+	 * @return The number of operations applied
+	 */
+	int drain( GameEngine engine ) {
+		int drained = 0;
+		while ( drained <= MASK ) {
+			int index = (int)head & MASK;
+			if ( SEQUENCES.get( index ) != head + 1 ) break;
+
+			byte op = OPS[index];
+			Entity entity = ENTITIES[index];
+			long handle = HANDLES[index];
+			ENTITIES[index] = null;
+			SEQUENCES.lazySet( index, head + MASK + 1 );
+			head++;
+			drained++;
+
+			switch ( op ) {
+				case ADD: engine.add( entity ); break;
+				case REMOVE: engine.remove( entity ); break;
+				case REMOVE_HANDLE: engine.remove( handle ); break;
+			}
+		}
+		return drained;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,102 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.function.Consumer;
+
+//==============================================================================
+/**
+ * <p>Work submitted with
+ * {@link GameEngine#submitJob(Entity, Callable, Consumer)}, which runs off the
+ * game loop and whose result is handed back to the game loop when done
+ *
+ * @param <R> The type of the job's result
+ */
+public final class Job<R> {
+	//--------------------------------------------------------------------------
+
+	final Entity OWNER;
+	private final Consumer<? super R> ON_RESULT;
+	private final FutureTask<R> TASK;
+
+	// Set by cancel even once the work has finished, since its result may
+	// not have been delivered yet
+	private volatile boolean dropped = false;
+
+	//--------------------------------------------------------------------------
+
+	Job( Entity owner, Callable<? extends R> work, Consumer<? super R> onResult, JobRunner runner ) {
+		OWNER = owner;
+		ON_RESULT = onResult;
+		TASK = new FutureTask<R>( work::call ) {
+			@Override protected void done() {
+				runner.onDone( Job.this );
+			}
+		};
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop the job, interrupting it if it is running, and never deliver its
+	 * result, even if it has already finished. Jobs are cancelled
+	 * automatically when their owning entity is removed from the engine.
+	 *
+	 * @return {@code true} if the job was cancelled, or {@code false} if it
+	 *         had already finished or been cancelled
+	 */
+	public boolean cancel() {
+		dropped = true;
+		return TASK.cancel( true );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if the job was cancelled before it finished
+	 */
+	public boolean isCancelled() { return TASK.isCancelled(); }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if the job has finished, failed, or been cancelled;
+	 *         its result may not have been delivered yet
+	 */
+	public boolean isDone() { return TASK.isDone(); }
+
+	//--------------------------------------------------------------------------
+
+	Runnable task() { return TASK; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if the job's result must not be delivered
+	 */
+	boolean isDropped() { return dropped; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Give the finished job's result to its handler, on the game loop
+	 *
+	 * @throws IllegalStateException If the job failed
+	 */
+	void deliver() {
+		R result;
+		try {
+			result = TASK.get();
+		} catch ( ExecutionException e ) {
+			throw new IllegalStateException( "Job failed", e.getCause() );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			return;
+		}
+		if ( ON_RESULT != null ) ON_RESULT.accept( result );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
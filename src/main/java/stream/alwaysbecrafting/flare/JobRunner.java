@@ -0,0 +1,146 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.Consumer;
+
+//==============================================================================
+/**
+ * <p>Runs a {@link GameEngine}'s {@link Job Jobs} on an {@link Executor}, and
+ * holds their results until the engine's next update delivers them
+ */
+final class JobRunner {
+	//--------------------------------------------------------------------------
+
+	// Shared by every engine without an executor of its own, and created when
+	// one first submits a job
+	private static Executor defaultExecutor;
+
+	private Executor executor;
+
+	// Finished jobs, in the order they finished, including cancelled ones
+	private final Queue<Job<?>> DONE = new ConcurrentLinkedQueue<>();
+
+	// Unfinished or undelivered jobs by owning entity, for cancellation
+	private final Map<Entity,List<Job<?>>> OWNED = new HashMap<>();
+
+	private int deliveryLimit = Integer.MAX_VALUE;
+
+	//--------------------------------------------------------------------------
+
+	synchronized void setExecutor( Executor executor ) {
+		this.executor = executor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	void setDeliveryLimit( int limit ) {
+		if ( limit < 1 ) throw new IllegalArgumentException( "Limit must be positive: " + limit );
+		deliveryLimit = limit;
+	}
+
+	//--------------------------------------------------------------------------
+
+	<R> Job<R> submit( Entity owner, Callable<? extends R> work, Consumer<? super R> onResult ) {
+		Job<R> job = new Job<>( owner, work, onResult, this );
+
+		if ( owner != null ) {
+			synchronized ( OWNED ) {
+				OWNED.computeIfAbsent( owner, o -> new ArrayList<>( 1 )).add( job );
+			}
+		}
+
+		executor().execute( job.task() );
+		return job;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called on the thread which finished or cancelled a job
+	 */
+	void onDone( Job<?> job ) {
+		DONE.add( job );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Deliver the results of finished jobs, up to the delivery limit; must
+	 * be called on the thread updating the engine
+	 *
+	 * @return The number of results delivered
+	 */
+	int deliver() {
+		int delivered = 0;
+		while ( delivered < deliveryLimit ) {
+			Job<?> job = DONE.poll();
+			if ( job == null ) break;
+
+			forget( job );
+			if ( job.isDropped() ) continue;
+
+			delivered++;
+			job.deliver();
+		}
+		return delivered;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Cancel every job owned by an entity which is leaving the engine
+	 */
+	void cancelOwnedBy( Entity owner ) {
+		List<Job<?>> jobs;
+		synchronized ( OWNED ) {
+			if ( OWNED.isEmpty() ) return;
+			jobs = OWNED.remove( owner );
+		}
+		if ( jobs == null ) return;
+
+		for ( Job<?> job : jobs ) job.cancel();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void forget( Job<?> job ) {
+		if ( job.OWNER == null ) return;
+
+		synchronized ( OWNED ) {
+			List<Job<?>> jobs = OWNED.get( job.OWNER );
+			if ( jobs != null && jobs.remove( job ) && jobs.isEmpty() ) OWNED.remove( job.OWNER );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private synchronized Executor executor() {
+		if ( executor == null ) executor = defaultExecutor();
+		return executor;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static synchronized Executor defaultExecutor() {
+		if ( defaultExecutor == null ) {
+			int threads = Math.max( 1, Runtime.getRuntime().availableProcessors() - 1 );
+			defaultExecutor = Executors.newFixedThreadPool( threads, runnable -> {
+				Thread thread = new Thread( runnable, "flare-job" );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+		return defaultExecutor;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,109 @@
+package stream.alwaysbecrafting.flare;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+
+//==============================================================================
+/**
+ * <p>Writes a file through a memory mapping which grows as needed
+ *
+ * <p>Each record is written whole by {@link MappedFileWriter#write(Consumer)};
+ * if it overflows the mapping, the mapping is doubled and the record is
+ * written again from its start. Files are limited to 2 GiB.
+ *
+ * <p>The file is not truncated on closing, since a file cannot be resized
+ * while mapped on every platform, and a mapping is only released when
+ * collected. Instead the first {@link MappedFileWriter#LENGTH_SIZE} bytes
+ * hold the length of the records, and {@link MappedFileWriter#map(FileChannel)}
+ * reads the file back without what follows them.
+ */
+final class MappedFileWriter implements Closeable {
+	//--------------------------------------------------------------------------
+
+	static final int LENGTH_SIZE = 4;
+
+	private static final int INITIAL_SIZE = 1 << 16;
+
+	private final FileChannel CHANNEL;
+
+	private MappedByteBuffer buffer;
+
+	//--------------------------------------------------------------------------
+
+	MappedFileWriter( Path file ) throws IOException {
+		CHANNEL = FileChannel.open( file,
+				StandardOpenOption.CREATE,
+				StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.READ,
+				StandardOpenOption.WRITE );
+		buffer = CHANNEL.map( FileChannel.MapMode.READ_WRITE, 0, INITIAL_SIZE );
+		buffer.position( LENGTH_SIZE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Map the records of a file written by a {@code MappedFileWriter}
+	 *
+	 * @return A buffer positioned at the first record and limited to the last
+	 *
+	 * @throws IOException If the file is too short for the length it records
+	 */
+	static MappedByteBuffer map( FileChannel channel ) throws IOException {
+		long size = channel.size();
+		if ( size < LENGTH_SIZE || size > Integer.MAX_VALUE ) throw new IOException( "Bad file size: " + size );
+
+		MappedByteBuffer buffer = channel.map( FileChannel.MapMode.READ_ONLY, 0, size );
+		int length = buffer.getInt();
+		if ( length < 0 || length > size - LENGTH_SIZE ) throw new IOException( "Bad record length: " + length );
+
+		buffer.limit( LENGTH_SIZE + length );
+		return buffer;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Write one record, growing the file until it fits
+	 */
+	void write( Consumer<MappedByteBuffer> record ) throws IOException {
+		int start = buffer.position();
+		while ( true ) {
+			try {
+				record.accept( buffer );
+				return;
+			} catch ( BufferOverflowException e ) {
+				long size = (long)buffer.capacity() * 2;
+				if ( size > Integer.MAX_VALUE ) throw new IOException( "File exceeds 2 GiB", e );
+
+				buffer.force();
+				buffer = CHANNEL.map( FileChannel.MapMode.READ_WRITE, 0, size );
+				buffer.position( start );
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	MappedByteBuffer buffer() { return buffer; }
+
+	//--------------------------------------------------------------------------
+
+	@Override public void close() throws IOException {
+		try {
+			buffer.putInt( 0, buffer.position() - LENGTH_SIZE );
+			buffer.force();
+		} finally {
+			CHANNEL.close();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
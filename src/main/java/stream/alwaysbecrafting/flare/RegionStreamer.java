@@ -0,0 +1,634 @@
+package stream.alwaysbecrafting.flare;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+//==============================================================================
+/**
+ * <p>An {@link EntitySystem} which keeps only the parts of a large world near its
+ * focus entities, such as players, in its {@link GameEngine}, and keeps the
+ * rest on disk
+ *
+ * <p>The world is divided into square chunks by the position held in a
+ * component. Chunks within the load radius of a focus are loaded before they
+ * are needed; loaded chunks beyond the chunk budget are saved and removed,
+ * least recently near a focus first. Files are read and written on a
+ * background thread, and loaded entities are added a limited number per
+ * update, so that streaming never stalls an update.
+ *
+ * <pre>
+ * RegionStreamer&lt;Position&gt; streamer = new RegionStreamer&lt;&gt;(
+ *         codecs, directory, Position.class, p -&gt; p.x, p -&gt; p.y, 64 );
+ * streamer.addFocus( player );
+ * engine.add( streamer );
+ * </pre>
+ *
+ * <p>Only components with codecs in the given {@link ComponentCodecs} are
+ * saved. Saved entities are added back as new {@link Entity} objects, with
+ * new handles. Focus entities, and entities without the position component,
+ * are never saved.
+ *
+ * <p>Entities are put in their chunk as soon as they gain the position
+ * component, so saving a chunk only visits its own entities. Moved entities
+ * change chunks when this system updates, which requires each move to be
+ * recorded with {@link Entity#markChanged(Class)}, as for
+ * {@link SpatialGrid}. Chunks holding entities when the streamer is added
+ * are considered loaded, unless they have been saved; a saved chunk which
+ * entities spawn or wander into is loaded, so that its saved entities join
+ * the new ones.
+ *
+ * <p>Removing the streamer from its engine saves every loaded chunk and
+ * removes its entities, waiting for all reads and writes to finish, so the
+ * streamer should be removed before a game exits.
+ *
+ * @param <T> The type of the component holding an entity's position
+ */
+public class RegionStreamer<T> extends EntitySystem {
+	//--------------------------------------------------------------------------
+
+	private static final Pattern FILE_NAME = Pattern.compile( "chunk_(-?\\d+)_(-?\\d+)\\.bin" );
+
+	private final ComponentCodecs CODECS;
+	private final Path DIRECTORY;
+	private final Class<T> TYPE;
+	private final ToDoubleFunction<T> X;
+	private final ToDoubleFunction<T> Y;
+	private final double CHUNK_SIZE;
+
+	// Reads and writes chunks in order while the streamer is in an engine
+	private ThreadPoolExecutor io;
+
+	private int loadRadius = 2;
+	private int chunkBudget = 64;
+	private int maxAddsPerUpdate = 256;
+
+	private GameEngine engine;
+
+	// Chunks loading or loaded, by key; saved chunks are absent
+	private final Map<Long,Chunk> CHUNKS = new HashMap<>();
+
+	// Chunks with files, or with files being written; found when started
+	private final Set<Long> SAVED = new HashSet<>();
+
+	// Loaded chunks, least recently near a focus first
+	private final LinkedHashMap<Long,Chunk> RESIDENT = new LinkedHashMap<>( 16, 0.75f, true );
+
+	// Chunks read from disk, waiting to be added; the first may be part added
+	private final Queue<Chunk> READ = new ConcurrentLinkedQueue<>();
+	private int addedFromFirst = 0;
+
+	private final AtomicInteger PENDING_IO = new AtomicInteger();
+	private volatile IOException failure;
+
+	// Focus entities, and the chunk each was in when last checked
+	private final List<Entity> FOCI = new ArrayList<>();
+	private long[] focusChunks = new long[0];
+
+	// The chunk holding each entity, and its index there, by slot; focus
+	// entities are in no chunk
+	private Chunk[] chunkBySlot = new Chunk[0];
+	private int[] indexBySlot = new int[0];
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param codecs Codecs for the components to save
+	 * @param directory Where to keep saved chunks
+	 * @param positionType The class of the component holding each entity's
+	 *                     position
+	 * @param x Reads the x coordinate from a position component
+	 * @param y Reads the y coordinate from a position component
+	 * @param chunkSize The width and height of each chunk
+	 */
+	public RegionStreamer( ComponentCodecs codecs, Path directory, Class<T> positionType,
+	                       ToDoubleFunction<T> x, ToDoubleFunction<T> y, double chunkSize ) {
+		if ( !( chunkSize > 0 )) throw new IllegalArgumentException( "Chunk size must be positive: " + chunkSize );
+
+		CODECS = codecs;
+		DIRECTORY = directory;
+		TYPE = positionType;
+		X = x;
+		Y = y;
+		CHUNK_SIZE = chunkSize;
+
+		onlyChanged( positionType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Keep the chunks around an entity loaded while it is in the engine
+	 *
+	 * @param entity An entity with the position component, such as a player
+	 */
+	public void addFocus( Entity entity ) {
+		leave( entity );
+		FOCI.add( entity );
+		focusChunks = Arrays.copyOf( focusChunks, FOCI.size() );
+		focusChunks[FOCI.size() - 1] = Long.MIN_VALUE;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entity An entity given to {@link RegionStreamer#addFocus(Entity)}
+	 */
+	public void removeFocus( Entity entity ) {
+		int index = FOCI.indexOf( entity );
+		if ( index < 0 ) return;
+
+		FOCI.remove( index );
+		System.arraycopy( focusChunks, index + 1, focusChunks, index, FOCI.size() - index );
+		focusChunks = Arrays.copyOf( focusChunks, FOCI.size() );
+
+		if ( engine != null && entity.getEngine() == engine && entity.has( TYPE )) join( entity, chunkOf( entity ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param chunks How many chunks in each direction around a focus to keep
+	 *               loaded; defaults to {@code 2}
+	 */
+	public void setLoadRadius( int chunks ) {
+		if ( chunks < 0 ) throw new IllegalArgumentException( "Negative radius: " + chunks );
+		loadRadius = chunks;
+		Arrays.fill( focusChunks, Long.MIN_VALUE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param chunks The most chunks to keep loaded, unless more are within
+	 *               the load radius of a focus; defaults to {@code 64}
+	 */
+	public void setChunkBudget( int chunks ) {
+		if ( chunks < 1 ) throw new IllegalArgumentException( "Budget must be positive: " + chunks );
+		chunkBudget = chunks;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param entities The most loaded entities to add in one update; defaults
+	 *                 to {@code 256}
+	 */
+	public void setMaxAddsPerUpdate( int entities ) {
+		if ( entities < 1 ) throw new IllegalArgumentException( "Limit must be positive: " + entities );
+		maxAddsPerUpdate = entities;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of chunks whose entities are all in the engine
+	 */
+	public int getResidentChunks() { return RESIDENT.size(); }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return {@code true} if no chunk is being read, written, or added
+	 */
+	public boolean isSettled() {
+		return PENDING_IO.get() == 0 && READ.isEmpty();
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @throws IllegalStateException If the saved chunks cannot be listed
+	 */
+	@Override public void onStart( GameEngine engine ) {
+		this.engine = engine;
+		failure = null;
+
+		// Not a daemon, so the JVM waits for a write under way; the thread
+		// times out when idle, so it never keeps the JVM alive on its own
+		io = new ThreadPoolExecutor( 1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+				runnable -> new Thread( runnable, "flare-region-io" ));
+		io.allowCoreThreadTimeOut( true );
+
+		if ( Files.isDirectory( DIRECTORY )) {
+			try ( DirectoryStream<Path> files = Files.newDirectoryStream( DIRECTORY, "chunk_*.bin" )) {
+				for ( Path file : files ) {
+					Matcher name = FILE_NAME.matcher( file.getFileName().toString() );
+					if ( name.matches() ) {
+						SAVED.add( chunkKey( Integer.parseInt( name.group( 1 )), Integer.parseInt( name.group( 2 ))));
+					}
+				}
+			} catch ( IOException e ) {
+				throw new IllegalStateException( "Could not list saved chunks", e );
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @throws IllegalStateException If a chunk could not be read or written
+	 */
+	@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+		if ( failure != null ) throw new IllegalStateException( "Region streaming failed", failure );
+
+		super.onUpdate( engine, deltaTime );
+		addRead();
+
+		for ( int i = 0; i < FOCI.size(); i++ ) {
+			Entity focus = FOCI.get( i );
+			if ( focus.getEngine() != engine || !focus.has( TYPE )) continue;
+
+			long chunk = chunkOf( focus );
+			if ( chunk != focusChunks[i] ) {
+				focusChunks[i] = chunk;
+				loadAround( chunk );
+			}
+		}
+
+		if ( RESIDENT.size() > chunkBudget ) saveOne();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save every loaded chunk and remove its entities, after waiting for
+	 * chunks being read, so that they are saved whole
+	 *
+	 * @throws IllegalStateException If a chunk could not be read or written,
+	 *         or the wait was interrupted
+	 */
+	@Override public void onStop( GameEngine engine ) {
+		io.shutdown();
+		try {
+			io.awaitTermination( Long.MAX_VALUE, TimeUnit.NANOSECONDS );
+		} catch ( InterruptedException e ) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException( "Interrupted before saving chunks", e );
+		}
+
+		for ( Chunk chunk : CHUNKS.values() ) {
+			List<Entity> leaving = new ArrayList<>( Arrays.asList( chunk.members ).subList( 0, chunk.size ));
+			for ( Entity entity : leaving ) engine.detach( entity );
+
+			// Entities read but not yet added are saved back with the rest
+			Entity[] read = chunk.entities;
+			if ( read != null ) {
+				int from = chunk == READ.peek() ? addedFromFirst : 0;
+				leaving.addAll( Arrays.asList( read ).subList( from, read.length ));
+			}
+
+			try {
+				write( chunk.KEY, leaving );
+			} catch ( IOException e ) {
+				if ( failure == null ) failure = e;
+			}
+		}
+
+		CHUNKS.clear();
+		RESIDENT.clear();
+		READ.clear();
+		addedFromFirst = 0;
+		SAVED.clear();
+		Arrays.fill( focusChunks, Long.MIN_VALUE );
+		Arrays.fill( chunkBySlot, null );
+		io = null;
+		this.engine = null;
+
+		if ( failure != null ) throw new IllegalStateException( "Region streaming failed", failure );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected boolean acceptEntity( Entity entity ) {
+		return entity.has( TYPE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onEntityMatched( Entity entity ) {
+		join( entity, chunkOf( entity ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onEntityUnmatched( Entity entity ) {
+		leave( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Called for entities whose position was marked changed, to move them
+	 * to the chunk they are now in
+	 */
+	@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+		int slot = entity.slot;
+		if ( slot >= chunkBySlot.length || chunkBySlot[slot] == null ) return;
+
+		long key = chunkOf( entity );
+		if ( chunkBySlot[slot].KEY != key ) {
+			leave( entity );
+			join( entity, key );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Add entities of chunks read from disk, up to the per-update limit
+	 */
+	private void addRead() {
+		int budget = maxAddsPerUpdate;
+		while ( budget > 0 ) {
+			Chunk chunk = READ.peek();
+			if ( chunk == null ) return;
+
+			Entity[] entities = chunk.entities;
+			int end = Math.min( entities.length, addedFromFirst + budget );
+			for ( int i = addedFromFirst; i < end; i++ ) engine.add( entities[i] );
+			budget -= end - addedFromFirst;
+			addedFromFirst = end;
+
+			if ( end == entities.length ) {
+				READ.poll();
+				addedFromFirst = 0;
+				chunk.entities = null;
+				RESIDENT.put( chunk.KEY, chunk );
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void loadAround( long center ) {
+		int centerX = (int)( center >> 32 );
+		int centerY = (int)center;
+
+		for ( int y = centerY - loadRadius; y <= centerY + loadRadius; y++ ) {
+			for ( int x = centerX - loadRadius; x <= centerX + loadRadius; x++ ) {
+				long key = chunkKey( x, y );
+				if ( CHUNKS.containsKey( key )) {
+					// Marks the chunk as recently near a focus
+					RESIDENT.get( key );
+				} else {
+					track( key );
+				}
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save the loaded chunk least recently near a focus, if it is not near
+	 * one now
+	 */
+	private void saveOne() {
+		Iterator<Chunk> resident = RESIDENT.values().iterator();
+		while ( resident.hasNext() ) {
+			Chunk chunk = resident.next();
+			if ( isNearFocus( chunk.KEY )) continue;
+
+			resident.remove();
+			save( chunk );
+			return;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private boolean isNearFocus( long key ) {
+		int x = (int)( key >> 32 );
+		int y = (int)key;
+		for ( long focus : focusChunks ) {
+			if ( focus == Long.MIN_VALUE ) continue;
+			if ( Math.abs( x - (int)( focus >> 32 )) <= loadRadius
+					&& Math.abs( y - (int)focus ) <= loadRadius ) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove a chunk's entities from the engine, and write them on the
+	 * background thread
+	 */
+	private void save( Chunk chunk ) {
+		long key = chunk.KEY;
+		List<Entity> leaving = new ArrayList<>( Arrays.asList( chunk.members ).subList( 0, chunk.size ));
+		for ( Entity entity : leaving ) engine.detach( entity );
+		CHUNKS.remove( key );
+
+		if ( leaving.isEmpty() ) SAVED.remove( key );
+		else SAVED.add( key );
+
+		PENDING_IO.incrementAndGet();
+		io.execute( () -> {
+			try {
+				write( key, leaving );
+			} catch ( IOException e ) {
+				failure = e;
+			} finally {
+				PENDING_IO.decrementAndGet();
+			}
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Read a chunk on the background thread, after any earlier save of it
+	 */
+	private void load( long key ) {
+		Chunk chunk = new Chunk( key );
+		CHUNKS.put( key, chunk );
+
+		PENDING_IO.incrementAndGet();
+		io.execute( () -> {
+			try {
+				chunk.entities = read( key );
+				READ.add( chunk );
+			} catch ( IOException e ) {
+				failure = e;
+			} finally {
+				PENDING_IO.decrementAndGet();
+			}
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Put an entity in a chunk, loading the chunk if it is not known
+	 */
+	private void join( Entity entity, long key ) {
+		if ( FOCI.contains( entity )) return;
+
+		track( key );
+		Chunk chunk = CHUNKS.get( key );
+
+		int slot = entity.slot;
+		if ( slot >= chunkBySlot.length ) {
+			int capacity = Math.max( slot + 1, chunkBySlot.length * 2 );
+			chunkBySlot = Arrays.copyOf( chunkBySlot, capacity );
+			indexBySlot = Arrays.copyOf( indexBySlot, capacity );
+		}
+		if ( chunk.size == chunk.members.length ) {
+			chunk.members = Arrays.copyOf( chunk.members, Math.max( 4, chunk.size * 2 ));
+		}
+
+		chunkBySlot[slot] = chunk;
+		indexBySlot[slot] = chunk.size;
+		chunk.members[chunk.size++] = entity;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Take an entity out of its chunk, if it is in one
+	 */
+	private void leave( Entity entity ) {
+		int slot = entity.slot;
+		if ( slot < 0 || slot >= chunkBySlot.length || chunkBySlot[slot] == null ) return;
+
+		Chunk chunk = chunkBySlot[slot];
+		int index = indexBySlot[slot];
+		Entity last = chunk.members[--chunk.size];
+		chunk.members[index] = last;
+		indexBySlot[last.slot] = index;
+		chunk.members[chunk.size] = null;
+		chunkBySlot[slot] = null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Note a chunk found holding entities, or needed near a focus, which
+	 * was not known to be loaded. A saved chunk is read, since writing it
+	 * again without its saved entities would lose them.
+	 */
+	private void track( long key ) {
+		if ( CHUNKS.containsKey( key )) return;
+
+		if ( SAVED.contains( key )) {
+			load( key );
+		} else {
+			Chunk chunk = new Chunk( key );
+			CHUNKS.put( key, chunk );
+			RESIDENT.put( key, chunk );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void write( long key, List<Entity> entities ) throws IOException {
+		Path file = fileOf( key );
+		if ( entities.isEmpty() ) {
+			Files.deleteIfExists( file );
+			return;
+		}
+
+		try ( MappedFileWriter writer = new MappedFileWriter( file )) {
+			writer.write( buffer -> buffer.putInt( entities.size() ));
+			for ( Entity entity : entities ) {
+				writer.write( buffer -> CODECS.write( entity, buffer ));
+			}
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private Entity[] read( long key ) throws IOException {
+		Path file = fileOf( key );
+		if ( !Files.exists( file )) return new Entity[0];
+
+		try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+			MappedByteBuffer buffer = MappedFileWriter.map( channel );
+			Entity[] entities = new Entity[buffer.getInt()];
+			for ( int i = 0; i < entities.length; i++ ) {
+				entities[i] = new Entity();
+				CODECS.read( buffer, entities[i] );
+			}
+			return entities;
+		} catch ( BufferUnderflowException e ) {
+			throw new IOException( "Chunk ends mid-record: " + file, e );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private Path fileOf( long key ) {
+		return DIRECTORY.resolve( "chunk_" + (int)( key >> 32 ) + "_" + (int)key + ".bin" );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private long chunkOf( Entity entity ) {
+		T position = entity.get( TYPE );
+		int x = (int)Math.floor( X.applyAsDouble( position ) / CHUNK_SIZE );
+		int y = (int)Math.floor( Y.applyAsDouble( position ) / CHUNK_SIZE );
+		return chunkKey( x, y );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static long chunkKey( int x, int y ) {
+		return (long)x << 32 | y & 0xFFFFFFFFL;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private static final class Chunk {
+		//----------------------------------------------------------------------
+
+		final long KEY;
+
+		// Entities in the engine which are in this chunk
+		Entity[] members = new Entity[0];
+		int size = 0;
+
+		// Entities read from disk, until they are added
+		volatile Entity[] entities;
+
+		//----------------------------------------------------------------------
+
+		Chunk( long key ) {
+			KEY = key;
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
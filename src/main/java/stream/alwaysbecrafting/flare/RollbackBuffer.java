@@ -0,0 +1,322 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+//==============================================================================
+/**
+ * <p>Keeps the state of a {@link GameEngine} for each of its most recent
+ * frames, so that it can be rewound to one of them and simulated forward
+ * again, such as when corrected input arrives late over a network
+ *
+ * <p>Only components of types registered with
+ * {@link RollbackBuffer#register(Class, Supplier, BiConsumer)} are saved;
+ * other components are left as they are when rewinding. Saved copies are
+ * reused from frame to frame, so once every frame of the ring has been
+ * filled, saving allocates nothing.
+ *
+ * <pre>
+ * rollback.register( Position.class, Position::new, ( from, to ) -&gt; to.set( from ));
+ *
+ * // Each frame
+ * engine.update( step );
+ * rollback.save();
+ *
+ * // When input for an earlier frame is corrected
+ * rollback.resimulate( frame, step, f -&gt; applyInput( inputs.get( f )));
+ * </pre>
+ *
+ * <p>Entities added or removed within the ring are removed or added back
+ * when rewinding, and the engine's {@link GameEngine#getTick() tick} is
+ * returned to the one it had when the frame was saved. Entities removed with {@link GameEngine#remove(long)} may
+ * already have been reused, so should not be removed within the ring.
+ */
+public final class RollbackBuffer {
+	//--------------------------------------------------------------------------
+
+	private final GameEngine ENGINE;
+	private final Frame[] FRAMES;
+
+	private final List<Tracked<?>> TRACKED = new ArrayList<>();
+
+	// Scratch set of slots, reused by each restore
+	private final Bits KEEP = new Bits();
+
+	private int latestFrame = -1;
+	private int savedFrames = 0;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param engine The engine to save frames of
+	 * @param frames The number of most recent frames to keep
+	 */
+	public RollbackBuffer( GameEngine engine, int frames ) {
+		if ( frames < 1 ) throw new IllegalArgumentException( "Must keep at least one frame: " + frames );
+
+		ENGINE = engine;
+		FRAMES = new Frame[frames];
+		for ( int i = 0; i < frames; i++ ) FRAMES[i] = new Frame();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save components of a type with each frame. Must be called before the
+	 * first frame is saved.
+	 *
+	 * @param componentType The class of the component to save
+	 * @param factory Makes an empty component to copy into
+	 * @param copier Copies the state of its first argument into its second
+	 */
+	public <T> void register( Class<T> componentType, Supplier<T> factory, BiConsumer<T,T> copier ) {
+		if ( savedFrames > 0 ) throw new IllegalStateException( "Types must be registered before saving" );
+		TRACKED.add( new Tracked<>( componentType, factory, copier ));
+		for ( Frame frame : FRAMES ) frame.addType();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save the engine's current state as the next frame, replacing the
+	 * oldest if the ring is full
+	 *
+	 * @return The number of the saved frame, counting up from {@code 0}
+	 */
+	public int save() {
+		latestFrame++;
+		savedFrames = Math.min( savedFrames + 1, FRAMES.length );
+		FRAMES[latestFrame % FRAMES.length].capture();
+		return latestFrame;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The most recently saved frame, or {@code -1} if none is saved
+	 */
+	public int getLatestFrame() { return latestFrame; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The oldest frame which can still be restored, or {@code -1} if
+	 *         none is saved
+	 */
+	public int getOldestFrame() {
+		return savedFrames == 0 ? -1 : latestFrame - savedFrames + 1;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Return the engine to the state saved with a frame, and forget every
+	 * frame after it
+	 *
+	 * @param frame The frame to return to
+	 *
+	 * @throws IllegalArgumentException If the frame is not in the ring
+	 */
+	public void restore( int frame ) {
+		if ( frame < getOldestFrame() || frame > latestFrame || savedFrames == 0 ) {
+			throw new IllegalArgumentException( "Frame " + frame + " is not saved" );
+		}
+
+		FRAMES[frame % FRAMES.length].restore();
+		savedFrames -= latestFrame - frame;
+		latestFrame = frame;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Return to a frame, then update the engine and save each frame again
+	 * until reaching the frame that was latest before rewinding
+	 *
+	 * <p>Every frame after {@code frame} is simulated within this call, which
+	 * is up to one less than the number of frames kept. No further limit is
+	 * applied; callers with a budget per frame must refuse corrections older
+	 * than they can afford to replay, or keep fewer frames.
+	 *
+	 * @param frame The frame to return to
+	 * @param deltaTime The time to give each update
+	 * @param beforeUpdate Called with the number of each frame before it is
+	 *                     simulated, such as to apply that frame's input; or
+	 *                     {@code null}
+	 */
+	public void resimulate( int frame, double deltaTime, IntConsumer beforeUpdate ) {
+		int target = latestFrame;
+		restore( frame );
+
+		while ( latestFrame < target ) {
+			if ( beforeUpdate != null ) beforeUpdate.accept( latestFrame + 1 );
+			ENGINE.update( deltaTime );
+			save();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private static final class Tracked<T> {
+		//----------------------------------------------------------------------
+
+		final Class<T> TYPE;
+		final Supplier<T> FACTORY;
+		final BiConsumer<T,T> COPIER;
+
+		//----------------------------------------------------------------------
+
+		Tracked( Class<T> type, Supplier<T> factory, BiConsumer<T,T> copier ) {
+			TYPE = type;
+			FACTORY = factory;
+			COPIER = copier;
+		}
+
+		//----------------------------------------------------------------------
+
+		/**
+		 * @return {@code saved}, or a new copy if it is {@code null}, holding
+		 *         the state of the entity's component
+		 */
+		Object save( Entity entity, Object saved ) {
+			T copy = saved != null ? TYPE.cast( saved ) : FACTORY.get();
+			COPIER.accept( entity.get( TYPE ), copy );
+			return copy;
+		}
+
+		//----------------------------------------------------------------------
+
+		void restore( Entity entity, Object saved ) {
+			T component = entity.get( TYPE );
+			if ( component == null ) {
+				component = FACTORY.get();
+				COPIER.accept( TYPE.cast( saved ), component );
+				entity.add( component );
+			} else {
+				COPIER.accept( TYPE.cast( saved ), component );
+			}
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private final class Frame {
+		//----------------------------------------------------------------------
+
+		private Entity[] entities = new Entity[16];
+		private int entityCount = 0;
+
+		private long tick;
+
+		// For each tracked type, the owners and saved copies of its components
+		private final List<Entity[]> OWNERS = new ArrayList<>();
+		private final List<Object[]> COPIES = new ArrayList<>();
+		private int[] counts = new int[0];
+
+		//----------------------------------------------------------------------
+
+		void addType() {
+			OWNERS.add( new Entity[16] );
+			COPIES.add( new Object[16] );
+			counts = Arrays.copyOf( counts, counts.length + 1 );
+		}
+
+		//----------------------------------------------------------------------
+
+		void capture() {
+			tick = ENGINE.getTick();
+			Arrays.fill( entities, 0, entityCount, null );
+			entityCount = 0;
+			for ( int t = 0; t < counts.length; t++ ) {
+				Arrays.fill( OWNERS.get( t ), 0, counts[t], null );
+				counts[t] = 0;
+			}
+
+			Slots slots = ENGINE.slots();
+			for ( int slot = 0; slot < slots.limit(); slot++ ) {
+				Entity entity = slots.bySlot( slot );
+				if ( entity == null ) continue;
+
+				if ( entityCount == entities.length ) entities = Arrays.copyOf( entities, entityCount * 2 );
+				entities[entityCount++] = entity;
+
+				for ( int t = 0; t < TRACKED.size(); t++ ) {
+					captureComponent( t, entity );
+				}
+			}
+		}
+
+		//----------------------------------------------------------------------
+
+		private void captureComponent( int type, Entity entity ) {
+			Tracked<?> tracked = TRACKED.get( type );
+			if ( !entity.has( tracked.TYPE )) return;
+
+			int count = counts[type];
+			Entity[] owners = OWNERS.get( type );
+			Object[] copies = COPIES.get( type );
+
+			if ( count == owners.length ) {
+				owners = Arrays.copyOf( owners, count * 2 );
+				copies = Arrays.copyOf( copies, count * 2 );
+				OWNERS.set( type, owners );
+				COPIES.set( type, copies );
+			}
+
+			owners[count] = entity;
+			copies[count] = tracked.save( entity, copies[count] );
+			counts[type] = count + 1;
+		}
+
+		//----------------------------------------------------------------------
+
+		void restore() {
+			ENGINE.setTick( tick );
+
+			// Bring back entities removed since this frame, then drop those added
+			KEEP.clear();
+			for ( int i = 0; i < entityCount; i++ ) {
+				ENGINE.add( entities[i] );
+				KEEP.set( entities[i].slot );
+			}
+
+			// Detached rather than removed, so that pooled components stay with
+			// entities which a later frame may bring back
+			Slots slots = ENGINE.slots();
+			for ( int slot = 0; slot < slots.limit(); slot++ ) {
+				Entity entity = slots.bySlot( slot );
+				if ( entity != null && !KEEP.get( slot )) ENGINE.detach( entity );
+			}
+
+			for ( int t = 0; t < TRACKED.size(); t++ ) {
+				Tracked<?> tracked = TRACKED.get( t );
+				Entity[] owners = OWNERS.get( t );
+				Object[] copies = COPIES.get( t );
+
+				KEEP.clear();
+				for ( int i = 0; i < counts[t]; i++ ) {
+					tracked.restore( owners[i], copies[i] );
+					KEEP.set( owners[i].slot );
+				}
+
+				for ( int i = 0; i < entityCount; i++ ) {
+					Entity entity = entities[i];
+					if ( !KEEP.get( entity.slot )) entity.remove( tracked.TYPE );
+				}
+			}
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,170 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+//==============================================================================
+/**
+ * <p>An ordering of {@link GameSystem}s into waves which may each be run
+ * concurrently
+ *
+ * <p>Systems are grouped into bands of equal priority, running next to each
+ * other in the engine's {@link SystemPlan}, and every band is split into as
+ * few waves as possible without two conflicting systems sharing a wave, nor
+ * two systems which must run one before the other. Such systems keep their
+ * order in the plan. Every wave finishes, and its recorded commands are
+ * applied, before the next begins.
+ */
+final class Schedule {
+	//--------------------------------------------------------------------------
+
+	private final Wave[] WAVES;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param systems Every system to schedule, in the order compiled by
+	 *                {@link SystemPlan}
+	 */
+	Schedule( Iterable<GameSystem> systems ) {
+		List<Wave> waves = new ArrayList<>();
+		List<GameSystem> band = new ArrayList<>();
+
+		for ( GameSystem system : systems ) {
+			if ( !band.isEmpty() && band.get( 0 ).priority != system.priority ) {
+				addBand( band, waves );
+				band.clear();
+			}
+			band.add( system );
+		}
+		if ( !band.isEmpty() ) addBand( band, waves );
+
+		WAVES = waves.toArray( new Wave[0] );
+	}
+
+	//--------------------------------------------------------------------------
+
+	void run( GameEngine engine, double deltaTime, ForkJoinPool pool ) {
+		for ( Wave wave : WAVES ) {
+			wave.run( engine, deltaTime, pool );
+			engine.applyCommands();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static void addBand( List<GameSystem> band, List<Wave> waves ) {
+		int[] waveOf = new int[band.size()];
+		int waveCount = 0;
+
+		for ( int i = 0; i < band.size(); i++ ) {
+			for ( int j = 0; j < i; j++ ) {
+				GameSystem system = band.get( i );
+				if ( system.conflictsWith( band.get( j )) || system.isOrderedWith( band.get( j ))) {
+					waveOf[i] = Math.max( waveOf[i], waveOf[j] + 1 );
+				}
+			}
+			waveCount = Math.max( waveCount, waveOf[i] + 1 );
+		}
+
+		for ( int wave = 0; wave < waveCount; wave++ ) {
+			List<GameSystem> members = new ArrayList<>();
+			for ( int i = 0; i < band.size(); i++ ) {
+				if ( waveOf[i] == wave ) members.add( band.get( i ));
+			}
+			waves.add( new Wave( members ));
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	// Never serialized; RecursiveAction is only incidentally Serializable
+	@SuppressWarnings( "serial" )
+	private static final class Wave extends RecursiveAction {
+		//----------------------------------------------------------------------
+
+		private final SystemTask[] TASKS;
+
+		// The tasks of systems still in the engine, of which the first are run
+		private final SystemTask[] RUNNING;
+		private int runningCount = 0;
+
+		//----------------------------------------------------------------------
+
+		Wave( List<GameSystem> systems ) {
+			TASKS = new SystemTask[systems.size()];
+			for ( int i = 0; i < TASKS.length; i++ ) {
+				TASKS[i] = new SystemTask( systems.get( i ));
+			}
+			RUNNING = new SystemTask[TASKS.length];
+		}
+
+		//----------------------------------------------------------------------
+
+		void run( GameEngine engine, double deltaTime, ForkJoinPool pool ) {
+			runningCount = 0;
+			for ( SystemTask task : TASKS ) {
+				// Skips systems removed by earlier waves in this update, as the
+				// serial loop in GameEngine.update() does
+				if ( task.SYSTEM.engine != engine ) continue;
+
+				task.reinitialize();
+				task.engine = engine;
+				task.deltaTime = deltaTime;
+				RUNNING[runningCount++] = task;
+			}
+
+			if ( runningCount == 0 ) return;
+			if ( runningCount == 1 ) {
+				engine.runSystem( RUNNING[0].SYSTEM, deltaTime );
+				return;
+			}
+
+			reinitialize();
+			pool.invoke( this );
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override protected void compute() {
+			for ( int i = 1; i < runningCount; i++ ) RUNNING[i].fork();
+			RUNNING[0].invoke();
+			for ( int i = 1; i < runningCount; i++ ) RUNNING[i].join();
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	@SuppressWarnings( "serial" )
+	private static final class SystemTask extends RecursiveAction {
+		//----------------------------------------------------------------------
+
+		final GameSystem SYSTEM;
+
+		GameEngine engine;
+		double deltaTime;
+
+		//----------------------------------------------------------------------
+
+		SystemTask( GameSystem system ) {
+			SYSTEM = system;
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override protected void compute() {
+			engine.runSystem( SYSTEM, deltaTime );
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,115 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+//==============================================================================
+/**
+ * <p>The table of {@link Entity Entities} in a {@link GameEngine}, indexed by
+ * small integer slots
+ *
+ * <p>Slots of removed entities are reused first, so that slot-indexed storage
+ * stays as compact as possible. Each slot has a generation which advances
+ * whenever its entity is removed, so a handle combining slot and generation
+ * can tell whether it still refers to the same entity.
+ */
+final class Slots {
+	//--------------------------------------------------------------------------
+
+	private static final int INITIAL_CAPACITY = 16;
+
+	private Entity[] entities = new Entity[INITIAL_CAPACITY];
+	private int[] generations = new int[INITIAL_CAPACITY];
+
+	private int[] free = new int[INITIAL_CAPACITY];
+	private int freeCount = 0;
+
+	// One past the highest slot ever handed out
+	private int limit = 0;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The slot given to the entity
+	 */
+	int allocate( Entity entity ) {
+		int slot;
+		if ( freeCount > 0 ) {
+			slot = free[--freeCount];
+		} else {
+			slot = limit++;
+			if ( slot == entities.length ) {
+				entities = Arrays.copyOf( entities, slot * 2 );
+				generations = Arrays.copyOf( generations, slot * 2 );
+			}
+			generations[slot] = 1;
+		}
+
+		entities[slot] = entity;
+		return slot;
+	}
+
+	//--------------------------------------------------------------------------
+
+	void free( int slot ) {
+		entities[slot] = null;
+
+		// Generation 0 is never used, so that no valid handle equals 0
+		if ( ++generations[slot] == 0 ) generations[slot] = 1;
+
+		if ( freeCount == free.length ) free = Arrays.copyOf( free, freeCount * 2 );
+		free[freeCount++] = slot;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return One past the highest slot ever handed out
+	 */
+	int limit() { return limit; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of slots currently holding an entity
+	 */
+	int size() { return limit - freeCount; }
+
+	//--------------------------------------------------------------------------
+
+	long handleOf( int slot ) {
+		return (( long )generations[slot] << 32 ) | ( slot & 0xFFFFFFFFL );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The entity the handle refers to, or {@code null} if it has been
+	 *         removed
+	 */
+	Entity get( long handle ) {
+		int slot = (int)handle;
+		int generation = (int)( handle >>> 32 );
+		if ( slot < 0 || slot >= limit || generations[slot] != generation ) return null;
+		return entities[slot];
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The entity in a slot, or {@code null} if it is free
+	 */
+	Entity bySlot( int slot ) {
+		return entities[slot];
+	}
+
+	//--------------------------------------------------------------------------
+
+	Stream<Entity> stream() {
+		return Arrays.stream( entities, 0, limit ).filter( Objects::nonNull );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
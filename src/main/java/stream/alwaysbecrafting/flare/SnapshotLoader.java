@@ -0,0 +1,125 @@
+package stream.alwaysbecrafting.flare;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+//==============================================================================
+/**
+ * <p>Loads files saved by {@link WorldSnapshot} into a {@link GameEngine}
+ *
+ * <p>Files are memory-mapped and applied one entity at a time, so only the
+ * parts being read need to be in memory. A loader remembers which entity it
+ * created for each saved key, so a full snapshot can be followed by the
+ * deltas saved after it, in order.
+ *
+ * <pre>
+ * SnapshotLoader loader = new SnapshotLoader( engine, codecs );
+ * loader.load( base );
+ * loader.load( delta1 );
+ * loader.load( delta2 );
+ * </pre>
+ */
+public final class SnapshotLoader {
+	//--------------------------------------------------------------------------
+
+	private final GameEngine ENGINE;
+	private final ComponentCodecs CODECS;
+
+	private final Map<Long,Entity> BY_KEY = new HashMap<>();
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param engine The engine to load entities into
+	 * @param codecs Codecs for the saved components, using the same ids as
+	 *               when they were saved
+	 */
+	public SnapshotLoader( GameEngine engine, ComponentCodecs codecs ) {
+		ENGINE = engine;
+		CODECS = codecs;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Apply a saved file to the engine. Loading a full snapshot first
+	 * removes every entity created by earlier loads.
+	 *
+	 * @param file A file written by {@link WorldSnapshot}
+	 *
+	 * @return The number of records applied
+	 *
+	 * @throws IOException If the file cannot be read, or is not a snapshot
+	 */
+	public int load( Path file ) throws IOException {
+		try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.READ )) {
+			MappedByteBuffer buffer = MappedFileWriter.map( channel );
+			if ( buffer.remaining() < WorldSnapshot.HEADER_SIZE
+					|| buffer.getInt() != WorldSnapshot.MAGIC
+					|| buffer.getShort() != WorldSnapshot.VERSION ) {
+				throw new IOException( "Not a snapshot: " + file );
+			}
+
+			byte kind = buffer.get();
+			int count = buffer.getInt();
+
+			if ( kind == WorldSnapshot.FULL ) {
+				BY_KEY.values().forEach( ENGINE::remove );
+				BY_KEY.clear();
+			}
+
+			try {
+				for ( int i = 0; i < count; i++ ) {
+					byte op = buffer.get();
+					long key = buffer.getLong();
+
+					if ( op == WorldSnapshot.UPSERT ) {
+						upsert( key, buffer );
+					} else {
+						Entity entity = BY_KEY.remove( key );
+						if ( entity != null ) ENGINE.remove( entity );
+					}
+				}
+			} catch ( BufferUnderflowException e ) {
+				throw new IOException( "Snapshot ends mid-record: " + file, e );
+			}
+
+			return count;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param key The key an entity was saved under
+	 *
+	 * @return The entity loaded for that key, or {@code null} if there is none
+	 */
+	public Entity get( long key ) {
+		return BY_KEY.get( key );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void upsert( long key, MappedByteBuffer buffer ) {
+		Entity entity = BY_KEY.get( key );
+		if ( entity != null ) {
+			CODECS.read( buffer, entity );
+			return;
+		}
+
+		entity = new Entity();
+		CODECS.read( buffer, entity );
+		ENGINE.add( entity );
+		BY_KEY.put( key, entity );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
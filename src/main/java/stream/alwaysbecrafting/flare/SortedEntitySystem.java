@@ -0,0 +1,266 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+//==============================================================================
+/**
+ * <p>An {@link EntitySystem} which handles its entities in a given order, such
+ * as by depth or by material for rendering
+ *
+ * <p>Order is kept incrementally, rather than by sorting every update:
+ * newly matching entities are inserted in place by binary search, and
+ * entities whose sort key changed are lifted out in one walk of the order
+ * and inserted again the same way. Nothing is allocated once the system's
+ * arrays have grown to fit its entities.
+ *
+ * <p>A change of sort key is noticed when a component of one of the types
+ * given to the constructor is marked with {@link Entity#markChanged(Class)},
+ * or when {@link SortedEntitySystem#markUnsorted(Entity)} is called:
+ *
+ * <pre>
+ * public class SpriteRenderer extends SortedEntitySystem {
+ *     public SpriteRenderer() {
+ *         super( Comparator.comparingInt( e -&gt; e.get( Depth.class ).z ), Depth.class );
+ *         requireAll( Sprite.class, Depth.class );
+ *     }
+ *     ...
+ * }
+ *
+ * entity.get( Depth.class ).z = 10;
+ * entity.markChanged( Depth.class );
+ * </pre>
+ *
+ * <p>Entities which start matching during an update are placed in order at
+ * the start of the next. A sorted system handles its entities serially;
+ * {@link EntitySystem#setParallel(int)} and
+ * {@link EntitySystem#onlyChanged(Class[])} should not be used with it.
+ */
+public abstract class SortedEntitySystem extends EntitySystem {
+	//--------------------------------------------------------------------------
+
+	// Bulk arrivals beyond this many are sorted together rather than inserted
+	private static final int MAX_INSERTIONS = 16;
+
+	private final Comparator<? super Entity> ORDER;
+
+	private Entity[] sorted = new Entity[16];
+	private int size = 0;
+
+	// Entities which started matching since the last update
+	private Entity[] arrived = new Entity[16];
+	private int arrivedCount = 0;
+
+	private boolean hasDeparted = false;
+	private volatile boolean isUnsorted = false;
+
+	// Slots of entities whose sort key changed since the last update, which
+	// may be marked from several threads; guarded by this system's lock
+	private final Bits MOVED = new Bits();
+	private boolean hasMoved = false;
+
+	// Scratch set of slots, to drop duplicates after departures
+	private final Bits KEPT = new Bits();
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param order The order in which to handle entities
+	 * @param sortKeyTypes Component types whose changes, recorded with
+	 *                     {@link Entity#markChanged(Class)}, may change an
+	 *                     entity's place in the order
+	 */
+	protected SortedEntitySystem( Comparator<? super Entity> order, Class<?>... sortKeyTypes ) {
+		ORDER = order;
+		for ( Class<?> type : sortKeyTypes ) WATCHED.set( ComponentType.idOf( type ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Move an entity to its place in the order before this system's next
+	 * update, such as after changing its sort key without marking it changed
+	 *
+	 * @param entity An entity handled by this system
+	 */
+	public void markUnsorted( Entity entity ) {
+		onChanged( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Repair the order of all of this system's entities before its next
+	 * update, with an insertion sort, such as after changing the sort keys of
+	 * entities which are not known
+	 */
+	public void markUnsorted() {
+		isUnsorted = true;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	@Override void handleEntities( GameEngine engine, double deltaTime ) {
+		if ( hasDeparted ) dropDeparted();
+		liftMoved();
+		if ( isUnsorted ) {
+			isUnsorted = false;
+			insertionSort();
+		}
+		if ( arrivedCount > 0 ) placeArrivals();
+
+		matchedCount = size;
+		handle( engine, sorted, size, deltaTime );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override void matched( Entity entity ) {
+		if ( arrivedCount == arrived.length ) arrived = Arrays.copyOf( arrived, arrivedCount * 2 );
+		arrived[arrivedCount++] = entity;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override void unmatched( Entity entity ) {
+		hasDeparted = true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override synchronized void onChanged( Entity entity ) {
+		if ( !FAMILY.contains( entity )) return;
+
+		MOVED.set( entity.slot );
+		hasMoved = true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override synchronized void clear() {
+		super.clear();
+		MOVED.clear();
+		hasMoved = false;
+		Arrays.fill( sorted, 0, size, null );
+		Arrays.fill( arrived, 0, arrivedCount, null );
+		size = 0;
+		arrivedCount = 0;
+		hasDeparted = false;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Remove entities which no longer match, and any entity which left and
+	 * matched again since the last update, so that it is placed only once
+	 */
+	private void dropDeparted() {
+		hasDeparted = false;
+		KEPT.clear();
+
+		int kept = 0;
+		for ( int i = 0; i < size; i++ ) {
+			Entity entity = sorted[i];
+			if ( !FAMILY.contains( entity ) || KEPT.get( entity.slot )) continue;
+			KEPT.set( entity.slot );
+			sorted[kept++] = entity;
+		}
+		Arrays.fill( sorted, kept, size, null );
+		size = kept;
+
+		int stillArrived = 0;
+		for ( int i = 0; i < arrivedCount; i++ ) {
+			Entity entity = arrived[i];
+			if ( !FAMILY.contains( entity ) || KEPT.get( entity.slot )) continue;
+			KEPT.set( entity.slot );
+			arrived[stillArrived++] = entity;
+		}
+		Arrays.fill( arrived, stillArrived, arrivedCount, null );
+		arrivedCount = stillArrived;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Take entities whose sort key changed out of the order, and treat
+	 * them as arrivals to be inserted again
+	 */
+	private synchronized void liftMoved() {
+		if ( !hasMoved ) return;
+		hasMoved = false;
+
+		int kept = 0;
+		for ( int i = 0; i < size; i++ ) {
+			Entity entity = sorted[i];
+			if ( MOVED.get( entity.slot )) {
+				if ( arrivedCount == arrived.length ) arrived = Arrays.copyOf( arrived, arrivedCount * 2 );
+				arrived[arrivedCount++] = entity;
+			} else {
+				sorted[kept++] = entity;
+			}
+		}
+		Arrays.fill( sorted, kept, size, null );
+		size = kept;
+
+		MOVED.clear();
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void insertionSort() {
+		for ( int i = 1; i < size; i++ ) {
+			Entity entity = sorted[i];
+			int j = i - 1;
+			if ( ORDER.compare( sorted[j], entity ) <= 0 ) continue;
+
+			while ( j >= 0 && ORDER.compare( sorted[j], entity ) > 0 ) {
+				sorted[j + 1] = sorted[j];
+				j--;
+			}
+			sorted[j + 1] = entity;
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void placeArrivals() {
+		if ( sorted.length < size + arrivedCount ) {
+			sorted = Arrays.copyOf( sorted, Math.max( size + arrivedCount, sorted.length * 2 ));
+		}
+
+		if ( arrivedCount > MAX_INSERTIONS ) {
+			System.arraycopy( arrived, 0, sorted, size, arrivedCount );
+			size += arrivedCount;
+			Arrays.sort( sorted, 0, size, ORDER );
+		} else {
+			for ( int i = 0; i < arrivedCount; i++ ) insert( arrived[i] );
+		}
+
+		Arrays.fill( arrived, 0, arrivedCount, null );
+		arrivedCount = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Insert an entity after any equal to it, keeping arrivals stable
+	 */
+	private void insert( Entity entity ) {
+		int low = 0;
+		int high = size;
+		while ( low < high ) {
+			int middle = ( low + high ) >>> 1;
+			if ( ORDER.compare( sorted[middle], entity ) <= 0 ) low = middle + 1;
+			else high = middle;
+		}
+
+		System.arraycopy( sorted, low, sorted, low + 1, size - low );
+		sorted[low] = entity;
+		size++;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
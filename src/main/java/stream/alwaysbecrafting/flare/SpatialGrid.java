@@ -0,0 +1,401 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Arrays;
+import java.util.function.ToDoubleFunction;
+
+//==============================================================================
+/**
+ * <p>An {@link EntitySystem} which indexes entities by the position held in a
+ * component, for range, radius, and nearest-neighbour queries which only
+ * examine entities near the queried area
+ *
+ * <p>Space is divided into square cells, which are hashed into a fixed number
+ * of buckets; each entity is linked into the bucket of its cell, by slot, so
+ * moving an entity between cells does not allocate. Entities are indexed as
+ * soon as they gain the position component, and removed as soon as they lose
+ * it or leave the engine.
+ *
+ * <p>Moved entities are re-indexed when this system updates, which requires
+ * each move to be recorded with {@link Entity#markChanged(Class)}:
+ *
+ * <pre>
+ * engine.add( new SpatialGrid&lt;&gt;( Position.class, p -&gt; p.x, p -&gt; p.y, 32 ), 0 );
+ *
+ * position.x += velocity.x * deltaTime;
+ * entity.markChanged( Position.class );
+ * </pre>
+ *
+ * <p>Query from systems of a later priority than the grid, so that results
+ * reflect the current frame. Queries write into arrays given by the caller,
+ * and return how many entities they wrote. Range and radius queries may be
+ * made from several threads at once, but not while the grid is updating.
+ *
+ * <p>Cells should be roughly the size of the areas most often queried; much
+ * smaller cells make queries visit more cells, and much larger cells make
+ * queries examine more entities.
+ *
+ * @param <T> The type of the component holding an entity's position
+ */
+public class SpatialGrid<T> extends EntitySystem {
+	//--------------------------------------------------------------------------
+
+	private static final int INITIAL_BUCKETS = 1024;
+
+	// Buckets per entity; walking entries of other cells which share a bucket
+	// costs more than the memory saved by having fewer buckets
+	private static final int BUCKETS_PER_ENTITY = 4;
+
+	private final Class<T> TYPE;
+	private final ToDoubleFunction<T> X;
+	private final ToDoubleFunction<T> Y;
+	private final double CELL_SIZE;
+
+	// The first indexed slot in each bucket, or -1
+	private int[] heads = new int[INITIAL_BUCKETS];
+	private int size = 0;
+
+	// Indexed entities' positions, cells, and bucket links, by slot. Positions
+	// are interleaved and cells packed, so that checking an entry touches as
+	// little memory as possible. A slot is not indexed while its bucket is -1.
+	private Entity[] entities = new Entity[0];
+	private double[] positions = new double[0];
+	private long[] cells = new long[0];
+	private int[] buckets = new int[0];
+	private int[] next = new int[0];
+	private int[] previous = new int[0];
+
+	// Bounds of every cell which has held an entity; queries outside are empty
+	private int minCellX = Integer.MAX_VALUE;
+	private int minCellY = Integer.MAX_VALUE;
+	private int maxCellX = Integer.MIN_VALUE;
+	private int maxCellY = Integer.MIN_VALUE;
+
+	// Squared distances of the entities found by nearest(), in order
+	private double[] nearestDistances = new double[0];
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param componentType The class of the component holding each entity's
+	 *                      position
+	 * @param x Reads the x coordinate from a position component
+	 * @param y Reads the y coordinate from a position component
+	 * @param cellSize The width and height of each cell
+	 */
+	public SpatialGrid( Class<T> componentType, ToDoubleFunction<T> x, ToDoubleFunction<T> y, double cellSize ) {
+		if ( !( cellSize > 0 )) throw new IllegalArgumentException( "Cell size must be positive: " + cellSize );
+
+		TYPE = componentType;
+		X = x;
+		Y = y;
+		CELL_SIZE = cellSize;
+
+		Arrays.fill( heads, -1 );
+		onlyChanged( componentType );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The number of entities indexed
+	 */
+	public int size() { return size; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Find entities whose positions lie within a rectangle, inclusive of its
+	 * edges
+	 *
+	 * @param out The array to write found entities into; the search stops
+	 *            once it is full
+	 *
+	 * @return The number of entities written into {@code out}
+	 */
+	public int queryRange( double minX, double minY, double maxX, double maxY, Entity[] out ) {
+		return query( minX, minY, maxX, maxY, minX, minY, -1, out );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Find entities whose positions lie within a circle, inclusive of its
+	 * edge
+	 *
+	 * @param out The array to write found entities into; the search stops
+	 *            once it is full
+	 *
+	 * @return The number of entities written into {@code out}
+	 */
+	public int queryRadius( double x, double y, double radius, Entity[] out ) {
+		return query( x - radius, y - radius, x + radius, y + radius, x, y, radius * radius, out );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Find the entities nearest to a point, nearest first
+	 *
+	 * <p>Uses storage kept by the grid, so may not be called from several
+	 * threads at once
+	 *
+	 * @param out The array to write found entities into; its length is the
+	 *            number of entities to find
+	 *
+	 * @return The number of entities written into {@code out}, which is less
+	 *         than its length only if fewer entities are indexed
+	 */
+	public int nearest( double x, double y, Entity[] out ) {
+		int k = out.length;
+		if ( k == 0 || size == 0 ) return 0;
+		if ( nearestDistances.length < k ) nearestDistances = new double[k];
+
+		int centerX = cellOf( x );
+		int centerY = cellOf( y );
+
+		// Rings nearer than the bounds hold no entities
+		long ring = Math.max( 0, Math.max(
+				Math.max((long)minCellX - centerX, (long)centerX - maxCellX ),
+				Math.max((long)minCellY - centerY, (long)centerY - maxCellY )));
+		long lastRing = Math.max(
+				Math.max( Math.abs((long)minCellX - centerX ), Math.abs((long)maxCellX - centerX )),
+				Math.max( Math.abs((long)minCellY - centerY ), Math.abs((long)maxCellY - centerY )));
+
+		int found = 0;
+		for ( ; ring <= lastRing; ring++ ) {
+			long top = centerY - ring;
+			long bottom = centerY + ring;
+			for ( long cellX = centerX - ring; cellX <= centerX + ring; cellX++ ) {
+				found = collectNearest( cellX, top, x, y, out, found );
+				if ( ring > 0 ) found = collectNearest( cellX, bottom, x, y, out, found );
+			}
+			for ( long cellY = top + 1; cellY < bottom; cellY++ ) {
+				found = collectNearest( centerX - ring, cellY, x, y, out, found );
+				found = collectNearest( centerX + ring, cellY, x, y, out, found );
+			}
+
+			// Cells in later rings are at least this far from the point
+			double reach = ring * CELL_SIZE;
+			if ( found == k && nearestDistances[k - 1] <= reach * reach ) break;
+		}
+
+		return found;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	@Override protected boolean acceptEntity( Entity entity ) {
+		return entity.has( TYPE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onEntityMatched( Entity entity ) {
+		index( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onEntityUnmatched( Entity entity ) {
+		int slot = entity.slot;
+		if ( slot < buckets.length && buckets[slot] >= 0 ) unlink( slot );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+		index( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public void onStop( GameEngine engine ) {
+		for ( int slot = 0; slot < buckets.length; slot++ ) {
+			if ( buckets[slot] >= 0 ) unlink( slot );
+		}
+		minCellX = minCellY = Integer.MAX_VALUE;
+		maxCellX = maxCellY = Integer.MIN_VALUE;
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	private int query( double minX, double minY, double maxX, double maxY,
+	                   double centerX, double centerY, double radiusSquared, Entity[] out ) {
+		if ( size == 0 || out.length == 0 ) return 0;
+
+		long fromX = Math.max( cellOf( minX ), minCellX );
+		long fromY = Math.max( cellOf( minY ), minCellY );
+		long toX = Math.min( cellOf( maxX ), maxCellX );
+		long toY = Math.min( cellOf( maxY ), maxCellY );
+
+		int found = 0;
+		for ( long cellY = fromY; cellY <= toY; cellY++ ) {
+			for ( long cellX = fromX; cellX <= toX; cellX++ ) {
+				int cx = (int)cellX;
+				int cy = (int)cellY;
+				long cell = cellKey( cx, cy );
+				for ( int slot = heads[bucketOf( cx, cy )]; slot >= 0; slot = next[slot] ) {
+					if ( cells[slot] != cell ) continue;
+
+					double x = positions[slot * 2];
+					double y = positions[slot * 2 + 1];
+					if ( radiusSquared < 0 ) {
+						if ( x < minX || x > maxX || y < minY || y > maxY ) continue;
+					} else {
+						double dx = x - centerX;
+						double dy = y - centerY;
+						if ( dx * dx + dy * dy > radiusSquared ) continue;
+					}
+
+					out[found++] = entities[slot];
+					if ( found == out.length ) return found;
+				}
+			}
+		}
+		return found;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Insert the entities of one cell into the sorted results of
+	 * {@link SpatialGrid#nearest(double, double, Entity[])}, keeping the
+	 * nearest
+	 *
+	 * @return The number of results after inserting
+	 */
+	private int collectNearest( long cellX, long cellY, double x, double y, Entity[] out, int found ) {
+		if ( cellX < minCellX || cellX > maxCellX || cellY < minCellY || cellY > maxCellY ) return found;
+
+		int cx = (int)cellX;
+		int cy = (int)cellY;
+		int k = out.length;
+		long cell = cellKey( cx, cy );
+		for ( int slot = heads[bucketOf( cx, cy )]; slot >= 0; slot = next[slot] ) {
+			if ( cells[slot] != cell ) continue;
+
+			double dx = positions[slot * 2] - x;
+			double dy = positions[slot * 2 + 1] - y;
+			double distance = dx * dx + dy * dy;
+			if ( found == k && distance >= nearestDistances[k - 1] ) continue;
+
+			int i = found < k ? found++ : k - 1;
+			for ( ; i > 0 && nearestDistances[i - 1] > distance; i-- ) {
+				nearestDistances[i] = nearestDistances[i - 1];
+				out[i] = out[i - 1];
+			}
+			nearestDistances[i] = distance;
+			out[i] = entities[slot];
+		}
+		return found;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void index( Entity entity ) {
+		T component = entity.get( TYPE );
+		if ( component == null ) return;
+
+		int slot = entity.slot;
+		ensureCapacity( slot + 1 );
+
+		double x = X.applyAsDouble( component );
+		double y = Y.applyAsDouble( component );
+		int cellX = cellOf( x );
+		int cellY = cellOf( y );
+		long cell = cellKey( cellX, cellY );
+		positions[slot * 2] = x;
+		positions[slot * 2 + 1] = y;
+
+		if ( buckets[slot] >= 0 ) {
+			if ( cells[slot] == cell ) return;
+			unlink( slot );
+		}
+
+		entities[slot] = entity;
+		cells[slot] = cell;
+		minCellX = Math.min( minCellX, cellX );
+		minCellY = Math.min( minCellY, cellY );
+		maxCellX = Math.max( maxCellX, cellX );
+		maxCellY = Math.max( maxCellY, cellY );
+
+		link( slot, cellX, cellY );
+		if ( ++size * BUCKETS_PER_ENTITY > heads.length ) rehash( heads.length * 2 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void link( int slot, int cellX, int cellY ) {
+		int bucket = bucketOf( cellX, cellY );
+		int head = heads[bucket];
+		next[slot] = head;
+		previous[slot] = -1;
+		if ( head >= 0 ) previous[head] = slot;
+		heads[bucket] = slot;
+		buckets[slot] = bucket;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void unlink( int slot ) {
+		int before = previous[slot];
+		int after = next[slot];
+		if ( before >= 0 ) next[before] = after;
+		else heads[buckets[slot]] = after;
+		if ( after >= 0 ) previous[after] = before;
+
+		buckets[slot] = -1;
+		entities[slot] = null;
+		size--;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void rehash( int bucketCount ) {
+		heads = new int[bucketCount];
+		Arrays.fill( heads, -1 );
+		for ( int slot = 0; slot < buckets.length; slot++ ) {
+			if ( buckets[slot] >= 0 ) link( slot, (int)( cells[slot] >> 32 ), (int)cells[slot] );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void ensureCapacity( int slots ) {
+		if ( slots <= buckets.length ) return;
+
+		int capacity = Math.max( slots, buckets.length * 2 );
+		int oldCapacity = buckets.length;
+		entities = Arrays.copyOf( entities, capacity );
+		positions = Arrays.copyOf( positions, capacity * 2 );
+		cells = Arrays.copyOf( cells, capacity );
+		next = Arrays.copyOf( next, capacity );
+		previous = Arrays.copyOf( previous, capacity );
+		buckets = Arrays.copyOf( buckets, capacity );
+		Arrays.fill( buckets, oldCapacity, capacity, -1 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private int cellOf( double coordinate ) {
+		return (int)Math.floor( coordinate / CELL_SIZE );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static long cellKey( int cellX, int cellY ) {
+		return (long)cellX << 32 | cellY & 0xFFFFFFFFL;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private int bucketOf( int cellX, int cellY ) {
+		int hash = cellX * 0x9E3779B1 ^ cellY * 0x85EBCA77;
+		return ( hash ^ ( hash >>> 16 )) & ( heads.length - 1 );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
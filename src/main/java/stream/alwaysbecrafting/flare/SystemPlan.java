@@ -0,0 +1,89 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+//==============================================================================
+/**
+ * <p>Compiles a {@link GameEngine}'s systems into the order in which they run
+ *
+ * <p>Systems run in priority order, then in the order they were added, except
+ * where {@link GameSystem#runsBefore(Class[])} or
+ * {@link GameSystem#runsAfter(Class[])} says otherwise: of the systems whose
+ * dependencies have run, the one earliest by priority always runs next.
+ */
+final class SystemPlan {
+	//--------------------------------------------------------------------------
+
+	private SystemPlan() {}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param systems Every system in an engine, by class
+	 *
+	 * @return The systems in the order to run them
+	 *
+	 * @throws IllegalStateException If the systems' dependencies form a cycle
+	 */
+	static GameSystem[] compile( Map<Class<? extends GameSystem>,GameSystem> systems ) {
+		GameSystem[] byPriority = systems.values().toArray( new GameSystem[0] );
+		Arrays.sort( byPriority );
+
+		int count = byPriority.length;
+		Map<GameSystem,Integer> indexOf = new IdentityHashMap<>();
+		for ( int i = 0; i < count; i++ ) indexOf.put( byPriority[i], i );
+
+		List<List<Integer>> successors = new ArrayList<>( count );
+		for ( int i = 0; i < count; i++ ) successors.add( new ArrayList<>( 0 ));
+		int[] waitingOn = new int[count];
+
+		for ( int i = 0; i < count; i++ ) {
+			GameSystem system = byPriority[i];
+			for ( Class<? extends GameSystem> type : system.BEFORE ) {
+				GameSystem other = systems.get( type );
+				if ( other == null || other == system ) continue;
+				successors.get( i ).add( indexOf.get( other ));
+				waitingOn[indexOf.get( other )]++;
+			}
+			for ( Class<? extends GameSystem> type : system.AFTER ) {
+				GameSystem other = systems.get( type );
+				if ( other == null || other == system ) continue;
+				successors.get( indexOf.get( other )).add( i );
+				waitingOn[i]++;
+			}
+		}
+
+		PriorityQueue<Integer> ready = new PriorityQueue<>();
+		for ( int i = 0; i < count; i++ ) {
+			if ( waitingOn[i] == 0 ) ready.add( i );
+		}
+
+		GameSystem[] plan = new GameSystem[count];
+		int planned = 0;
+		while ( !ready.isEmpty() ) {
+			int next = ready.poll();
+			plan[planned++] = byPriority[next];
+			for ( int successor : successors.get( next )) {
+				if ( --waitingOn[successor] == 0 ) ready.add( successor );
+			}
+		}
+
+		if ( planned < count ) {
+			List<String> cycle = new ArrayList<>();
+			for ( int i = 0; i < count; i++ ) {
+				if ( waitingOn[i] > 0 ) cycle.add( byPriority[i].getClass().getName() );
+			}
+			throw new IllegalStateException( "Systems depend on each other in a cycle: " + cycle );
+		}
+
+		return plan;
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
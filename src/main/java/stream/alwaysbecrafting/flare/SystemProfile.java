@@ -0,0 +1,58 @@
+package stream.alwaysbecrafting.flare;
+
+//==============================================================================
+/**
+ * <p>Measurements of one {@link GameSystem}, recorded by a
+ * {@link FrameProfiler} each time the system updates
+ */
+public final class SystemProfile {
+	//--------------------------------------------------------------------------
+
+	private final String NAME;
+
+	private final Histogram TIME;
+	private final Histogram MATCHED;
+	private final Histogram HANDLED;
+
+	//--------------------------------------------------------------------------
+
+	SystemProfile( GameSystem system, int window ) {
+		NAME = system.getClass().getName();
+		TIME = new Histogram( window );
+		MATCHED = new Histogram( window );
+		HANDLED = new Histogram( window );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The class name of the profiled system
+	 */
+	public String getName() { return NAME; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Time taken by each update, in nanoseconds
+	 */
+	public Histogram getTime() { return TIME; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Entities matched at each update; always {@code 0} for systems
+	 *         other than {@link EntitySystem}
+	 */
+	public Histogram getMatched() { return MATCHED; }
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Entities handled at each update; always {@code 0} for systems
+	 *         other than {@link EntitySystem}
+	 */
+	public Histogram getHandled() { return HANDLED; }
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
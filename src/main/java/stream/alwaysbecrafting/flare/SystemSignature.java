@@ -0,0 +1,47 @@
+package stream.alwaysbecrafting.flare;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+//==============================================================================
+/**
+ * <p>Declares the components an {@link EntitySystem} handles, so that the
+ * {@code flare-processor} annotation processor can generate a base class
+ * which hands them straight to a typed method
+ *
+ * <p>For a system {@code MovementSystem} in some package, the processor
+ * generates an abstract {@code MovementSystemBase} in the same package. It
+ * requires every listed component, reads each through a
+ * {@link ComponentAccessor}, and passes them, in the listed order, to
+ * {@code onHandle}:
+ *
+ * <pre>
+ * &#64;SystemSignature({ Position.class, Velocity.class })
+ * public class MovementSystem extends MovementSystemBase {
+ *     &#64;Override protected void onHandle( Entity entity, Position position, Velocity velocity, double deltaTime ) {
+ *         position.x += velocity.x * deltaTime;
+ *     }
+ * }
+ * </pre>
+ *
+ * <p>The processor is added to the compiler's annotation processor path; it
+ * is not needed at runtime.
+ */
+@Documented
+@Retention( RetentionPolicy.SOURCE )
+@Target( ElementType.TYPE )
+public @interface SystemSignature {
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return The component types to require and hand to {@code onHandle},
+	 *         in order
+	 */
+	Class<?>[] value();
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
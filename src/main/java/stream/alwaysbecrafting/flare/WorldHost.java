@@ -0,0 +1,259 @@
+package stream.alwaysbecrafting.flare;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+//==============================================================================
+/**
+ * <p>Ticks many independent {@link GameEngine GameEngines}, such as the matches
+ * on a game server, on a shared pool of threads rather than a thread each
+ *
+ * <p>Each world is updated at its own fixed rate. A single dispatcher thread
+ * waits for the next world to fall due and hands it to the pool; worlds which
+ * are due longest are handed over first, so that worlds which have fallen
+ * behind catch up before others run early. A world is never updated by two
+ * threads at once.
+ *
+ * <pre>
+ * WorldHost host = new WorldHost();
+ * HostedWorld match = host.add( engine, 30 );
+ * host.start();
+ *
+ * // On shutdown
+ * host.close();
+ *
+ * // Later, such as in a monitoring endpoint
+ * match.getLoad();
+ * match.getLateness().p99();
+ * </pre>
+ *
+ * <p>Worlds should keep their updates short and avoid blocking, since a
+ * blocked world holds a pool thread which other worlds could use; slow work
+ * belongs in {@link GameEngine#submitJob(Entity, java.util.concurrent.Callable, java.util.function.Consumer)}.
+ */
+public final class WorldHost implements AutoCloseable {
+	//--------------------------------------------------------------------------
+
+	private final ForkJoinPool POOL;
+
+	// Whether POOL was made by this host, and so is shut down with it
+	private final boolean OWNS_POOL;
+
+	private final DelayQueue<Due> DUE = new DelayQueue<>();
+	private final Map<HostedWorld,Due> WORLDS = new ConcurrentHashMap<>();
+
+	private volatile int maxCatchUpTicks = 5;
+	private Thread dispatcher;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Create a host which ticks worlds on a new pool with a thread for each
+	 * processor, which runs waiting worlds in the order they were handed over.
+	 * The pool is shut down when the host is {@link WorldHost#close() closed}.
+	 */
+	public WorldHost() {
+		this( new ForkJoinPool(
+				Runtime.getRuntime().availableProcessors(),
+				ForkJoinPool.defaultForkJoinWorkerThreadFactory,
+				null,
+				true ), true );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @param pool The pool to tick worlds on, which is left running when the
+	 *             host is closed
+	 */
+	public WorldHost( ForkJoinPool pool ) {
+		this( pool, false );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private WorldHost( ForkJoinPool pool, boolean ownsPool ) {
+		POOL = pool;
+		OWNS_POOL = ownsPool;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Start ticking a world, with its first tick due immediately
+	 *
+	 * @param engine The world to tick; must not be updated elsewhere
+	 * @param ticksPerSecond The rate at which to update the world
+	 *
+	 * @return The hosted world, for measurements and removal
+	 */
+	public HostedWorld add( GameEngine engine, double ticksPerSecond ) {
+		if ( !( ticksPerSecond > 0 )) throw new IllegalArgumentException( "Tick rate must be positive: " + ticksPerSecond );
+
+		HostedWorld world = new HostedWorld( this, engine, ticksPerSecond, System.nanoTime() );
+		Due due = new Due( world );
+		WORLDS.put( world, due );
+		DUE.add( due );
+		return world;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop ticking a world. A tick already running is allowed to finish.
+	 *
+	 * @param world The world to remove
+	 */
+	public void remove( HostedWorld world ) {
+		world.markRemoved();
+		Due due = WORLDS.remove( world );
+		if ( due != null ) DUE.remove( due );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * @return Every world being ticked
+	 */
+	public Collection<HostedWorld> getWorlds() {
+		return Collections.unmodifiableCollection( WORLDS.keySet() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Set how many ticks a world may fall behind before the missed ticks are
+	 * dropped rather than caught up
+	 *
+	 * @param ticks The most ticks to catch up; defaults to {@code 5}
+	 */
+	public void setMaxCatchUpTicks( int ticks ) {
+		if ( ticks < 0 ) throw new IllegalArgumentException( "Negative catch-up: " + ticks );
+		maxCatchUpTicks = ticks;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Start handing due worlds to the pool, on a new daemon thread
+	 *
+	 * @throws IllegalStateException If this host is already started
+	 */
+	public synchronized void start() {
+		if ( dispatcher != null ) throw new IllegalStateException( "Already started" );
+
+		dispatcher = new Thread( this::dispatch, "flare-world-host" );
+		dispatcher.setDaemon( true );
+		dispatcher.start();
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop handing worlds to the pool. Ticks already handed over are
+	 * allowed to finish; worlds stay added, and resume if started again.
+	 */
+	public synchronized void stop() {
+		if ( dispatcher == null ) return;
+
+		dispatcher.interrupt();
+		dispatcher = null;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop handing worlds to the pool, and wait for the dispatcher thread
+	 * to end, then shut down the pool if this host created it. Ticks already
+	 * handed over are allowed to finish.
+	 */
+	@Override public void close() {
+		Thread stopped;
+		synchronized ( this ) {
+			stopped = dispatcher;
+			stop();
+		}
+
+		if ( stopped != null ) {
+			try {
+				stopped.join();
+			} catch ( InterruptedException e ) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		if ( OWNS_POOL ) POOL.shutdown();
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Queue a world's next tick, after its deadline has been advanced
+	 */
+	void schedule( HostedWorld world ) {
+		Due due = WORLDS.get( world );
+		if ( due != null && world.isHosted() ) DUE.add( due );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void dispatch() {
+		try {
+			while ( !Thread.currentThread().isInterrupted() ) {
+				Due due = DUE.take();
+				POOL.execute( due );
+			}
+		} catch ( InterruptedException e ) {
+			// Stopped
+		}
+	}
+
+	//--------------------------------------------------------------------------
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>A world waiting for its deadline, and the task which ticks it
+	 */
+	private final class Due implements Delayed, Runnable {
+		//----------------------------------------------------------------------
+
+		final HostedWorld WORLD;
+
+		//----------------------------------------------------------------------
+
+		Due( HostedWorld world ) {
+			WORLD = world;
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override public void run() {
+			WORLD.tick( maxCatchUpTicks );
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override public long getDelay( TimeUnit unit ) {
+			return unit.convert( WORLD.deadline - System.nanoTime(), TimeUnit.NANOSECONDS );
+		}
+
+		//----------------------------------------------------------------------
+
+		@Override public int compareTo( Delayed other ) {
+			// Compared by difference, since nanoTime() may overflow
+			return Long.signum( WORLD.deadline - ((Due)other).WORLD.deadline );
+		}
+
+		//----------------------------------------------------------------------
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,219 @@
+package stream.alwaysbecrafting.flare;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+//==============================================================================
+/**
+ * <p>Saves the {@link Entity Entities} of a {@link GameEngine} to binary
+ * files, either whole or as the changes since the last save
+ *
+ * <p>Components are encoded with the given {@link ComponentCodecs} and
+ * written through a memory mapping. Entities are keyed by their
+ * {@link Entity#getHandle() handle} at the time they're saved, so that
+ * later deltas can refer to them.
+ *
+ * <p>While attached, a snapshot listens to its engine for entities being
+ * added, removed, or gaining and losing components, and for components
+ * reported modified with {@link Entity#markChanged(Class)}. Other changes to
+ * the contents of a component can't be seen, and must be reported with
+ * {@link WorldSnapshot#markChanged(Entity)} to be included in the next delta.
+ *
+ * <p>Saves should be made between updates, on the thread updating the
+ * engine. Files are read back with {@link SnapshotLoader}.
+ */
+public final class WorldSnapshot implements EntityListener {
+	//--------------------------------------------------------------------------
+
+	static final int MAGIC = 0x464C4152;
+	static final short VERSION = 2;
+
+	static final byte FULL  = 0;
+	static final byte DELTA = 1;
+
+	static final byte UPSERT = 1;
+	static final byte REMOVE = 2;
+
+	// Magic, version, kind, and record count
+	static final int HEADER_SIZE = 4 + 2 + 1 + 4;
+
+	private final GameEngine ENGINE;
+	private final ComponentCodecs CODECS;
+
+	// Guarded by itself, since components may be marked changed by systems
+	// updating in parallel
+	private final Set<Entity> CHANGED = new LinkedHashSet<>();
+	private long[] removed = new long[16];
+	private int removedCount = 0;
+
+	private boolean hasSaved = false;
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Create a snapshot of an engine, and start tracking its changes
+	 *
+	 * @param engine The engine to save
+	 * @param codecs Codecs for the components to save
+	 */
+	public WorldSnapshot( GameEngine engine, ComponentCodecs codecs ) {
+		ENGINE = engine;
+		CODECS = codecs;
+		engine.addListener( this );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Stop tracking changes to the engine
+	 */
+	public void detach() {
+		ENGINE.removeListener( this );
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Include an entity in the next delta, after changing the contents of
+	 * its components
+	 *
+	 * @param entity The changed entity
+	 */
+	public void markChanged( Entity entity ) {
+		if ( entity.engine != ENGINE ) return;
+		synchronized ( CHANGED ) {
+			CHANGED.add( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save every entity in the engine
+	 *
+	 * @param file The file to write, replacing any existing file
+	 *
+	 * @throws IOException If the file cannot be written
+	 */
+	public void save( Path file ) throws IOException {
+		try ( MappedFileWriter writer = new MappedFileWriter( file )) {
+			int header = writer.buffer().position();
+			writeHeader( writer, FULL );
+
+			int count = 0;
+			for ( Iterator<Entity> entities = ENGINE.entityStream().iterator(); entities.hasNext(); ) {
+				writeUpsert( writer, entities.next() );
+				count++;
+			}
+
+			writer.buffer().putInt( header + HEADER_SIZE - 4, count );
+		}
+
+		clearChanges();
+		hasSaved = true;
+	}
+
+	//--------------------------------------------------------------------------
+
+	/**
+	 * <p>Save only the entities added, removed, or changed since the last save
+	 *
+	 * @param file The file to write, replacing any existing file
+	 *
+	 * @throws IOException If the file cannot be written
+	 * @throws IllegalStateException If no full save has been made yet
+	 */
+	public void saveDelta( Path file ) throws IOException {
+		if ( !hasSaved ) throw new IllegalStateException( "Need a full save before saving a delta" );
+
+		try ( MappedFileWriter writer = new MappedFileWriter( file )) {
+			int header = writer.buffer().position();
+			writeHeader( writer, DELTA );
+
+			for ( int i = 0; i < removedCount; i++ ) {
+				long key = removed[i];
+				writer.write( buffer -> {
+					buffer.put( REMOVE );
+					buffer.putLong( key );
+				} );
+			}
+			synchronized ( CHANGED ) {
+				for ( Entity entity : CHANGED ) {
+					writeUpsert( writer, entity );
+				}
+				writer.buffer().putInt( header + HEADER_SIZE - 4, removedCount + CHANGED.size() );
+			}
+		}
+
+		clearChanges();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public void onEntityAdded( Entity entity ) {
+		synchronized ( CHANGED ) {
+			CHANGED.add( entity );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public void onEntityRemoved( Entity entity ) {
+		synchronized ( CHANGED ) {
+			CHANGED.remove( entity );
+		}
+
+		if ( removedCount == removed.length ) removed = Arrays.copyOf( removed, removedCount * 2 );
+		removed[removedCount++] = entity.getHandle();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public void onComponentsChanged( Entity entity ) {
+		markChanged( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Override public void onComponentModified( Entity entity ) {
+		markChanged( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void clearChanges() {
+		synchronized ( CHANGED ) {
+			CHANGED.clear();
+		}
+		removedCount = 0;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static void writeHeader( MappedFileWriter writer, byte kind ) throws IOException {
+		writer.write( buffer -> {
+			buffer.putInt( MAGIC );
+			buffer.putShort( VERSION );
+			buffer.put( kind );
+			buffer.putInt( 0 );
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private void writeUpsert( MappedFileWriter writer, Entity entity ) throws IOException {
+		long key = entity.getHandle();
+		writer.write( buffer -> {
+			buffer.put( UPSERT );
+			buffer.putLong( key );
+			CODECS.write( entity, buffer );
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
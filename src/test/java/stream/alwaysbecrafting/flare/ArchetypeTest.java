@@ -0,0 +1,113 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+//==============================================================================
+public class ArchetypeTest {
+	//--------------------------------------------------------------------------
+
+	private static class Position { int x; Position( int x ) { this.x = x; } }
+	private static class Velocity { int dx; Velocity( int dx ) { this.dx = dx; } }
+
+	//--------------------------------------------------------------------------
+
+	@Test public void ArchetypeStream_WithMatchingEntities_ReturnsDenseColumns() {
+		GameEngine engine = new GameEngine( ComponentStorage.ARCHETYPE );
+		engine.add( new Entity( new Position( 1 ), new Velocity( 10 )));
+		engine.add( new Entity( new Position( 2 ), new Velocity( 20 )));
+		engine.add( new Entity( new Position( 3 )));
+
+
+		List<Archetype> archetypes = engine.archetypeStream( Position.class, Velocity.class )
+				.collect( Collectors.toList() );
+
+
+		Assert.assertEquals( 1, archetypes.size() );
+		Archetype archetype = archetypes.get( 0 );
+		Assert.assertEquals( 2, archetype.size() );
+
+		Object[] positions = archetype.getColumn( Position.class );
+		Object[] velocities = archetype.getColumn( Velocity.class );
+		for ( int row = 0; row < archetype.size(); row++ ) {
+			Entity entity = archetype.getEntity( row );
+			Assert.assertSame( entity.get( Position.class ), positions[row] );
+			Assert.assertSame( entity.get( Velocity.class ), velocities[row] );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void AddAndRemove_OnStoredEntity_MovesBetweenArchetypes() {
+		GameEngine engine = new GameEngine( ComponentStorage.ARCHETYPE );
+		Position position = new Position( 1 );
+		Velocity velocity = new Velocity( 10 );
+		Entity entity = new Entity( position );
+		Entity other = new Entity( new Position( 2 ));
+		engine.add( entity );
+		engine.add( other );
+
+
+		entity.add( velocity );
+
+
+		Assert.assertSame( position, entity.get( Position.class ));
+		Assert.assertSame( velocity, entity.get( Velocity.class ));
+		Assert.assertEquals( 1, engine.archetypeStream( Velocity.class ).count() );
+		Assert.assertEquals( 2, other.get( Position.class ).x );
+
+
+		entity.remove( Position.class );
+
+
+		Assert.assertNull( entity.get( Position.class ));
+		Assert.assertSame( velocity, entity.get( Velocity.class ));
+		Assert.assertEquals( 1, engine.archetypeStream( Position.class )
+				.mapToInt( Archetype::size )
+				.sum() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Remove_StoredEntity_KeepsItsComponents() {
+		GameEngine engine = new GameEngine( ComponentStorage.ARCHETYPE );
+		Position position = new Position( 1 );
+		Entity entity = new Entity( position );
+		engine.add( entity );
+
+
+		engine.remove( entity );
+
+
+		Assert.assertSame( position, entity.get( Position.class ));
+		Assert.assertEquals( 0, engine.archetypeStream( Position.class ).count() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void ComponentAccessor_AcrossArchetypes_ReadsEachEntitysComponent() {
+		GameEngine engine = new GameEngine( ComponentStorage.ARCHETYPE );
+		Entity moving = new Entity( new Position( 1 ), new Velocity( 10 ));
+		Entity still = new Entity( new Position( 2 ));
+		Entity loose = new Entity( new Position( 3 ));
+		engine.add( moving );
+		engine.add( still );
+		ComponentAccessor<Velocity> velocity = new ComponentAccessor<>( Velocity.class );
+		ComponentAccessor<Position> position = new ComponentAccessor<>( Position.class );
+
+
+		int[] read = {
+				position.get( moving ).x, position.get( still ).x, position.get( moving ).x,
+				position.get( loose ).x, velocity.get( moving ).dx };
+
+
+		Assert.assertArrayEquals( new int[] { 1, 2, 1, 3, 10 }, read );
+		Assert.assertNull( velocity.get( still ));
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,120 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+//==============================================================================
+public class ColumnSchemaTest {
+	//--------------------------------------------------------------------------
+
+	private static class Motion extends ColumnSchema {
+		final FloatColumn X = floatColumn();
+		final FloatColumn VX = floatColumn();
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Columns_WithManyEntities_GrowAndKeepValues() {
+		GameEngine engine = new GameEngine();
+		Motion motion = new Motion();
+		engine.add( motion );
+
+		Entity[] entities = new Entity[100];
+		for ( int i = 0; i < entities.length; i++ ) {
+			entities[i] = new Entity();
+			engine.add( entities[i] );
+			motion.add( entities[i] );
+			motion.X.set( entities[i], i );
+		}
+
+
+		for ( int i = 0; i < entities.length; i++ ) {
+			Assert.assertEquals( i, motion.X.get( entities[i] ), 0 );
+		}
+		Assert.assertEquals( 100, motion.size() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithColumnSchemaConstraint_HandlesMembers() {
+		GameEngine engine = new GameEngine();
+		Motion motion = new Motion();
+		engine.add( motion );
+		engine.add( new EntitySystem() {
+			{ requireAll( Motion.class ); }
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				float[] x = motion.X.values();
+				float[] vx = motion.VX.values();
+				x[entity.getSlot()] += vx[entity.getSlot()] * deltaTime;
+			}
+		} );
+
+		Entity moving = new Entity();
+		Entity still = new Entity();
+		engine.add( moving );
+		engine.add( still );
+		motion.add( moving );
+		motion.VX.set( moving, 2 );
+
+
+		engine.update( 0.5 );
+
+
+		Assert.assertTrue( moving.has( Motion.class ));
+		Assert.assertFalse( still.has( Motion.class ));
+		Assert.assertEquals( 1, motion.X.get( moving ), 0 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Remove_EntityFromEngine_LeavesSchemaAndFreesSlot() {
+		GameEngine engine = new GameEngine();
+		Motion motion = new Motion();
+		engine.add( motion );
+		Entity first = new Entity();
+		engine.add( first );
+		motion.add( first );
+		motion.X.set( first, 5 );
+		int slot = first.getSlot();
+
+
+		engine.remove( first );
+		Entity second = new Entity();
+		engine.add( second );
+
+
+		Assert.assertFalse( first.has( Motion.class ));
+		Assert.assertEquals( 0, motion.size() );
+		Assert.assertEquals( -1, motion.nextSlot( 0 ));
+		Assert.assertEquals( slot, second.getSlot() );
+		Assert.assertFalse( motion.has( second ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void EntityRemove_WithSchemaClass_LeavesSchemaInEitherStorage() {
+		for ( ComponentStorage storage : ComponentStorage.values() ) {
+			GameEngine engine = new GameEngine( storage );
+			Motion motion = new Motion();
+			engine.add( motion );
+			Entity entity = new Entity( "component" );
+			engine.add( entity );
+			motion.add( entity );
+
+
+			boolean removed = entity.remove( Motion.class );
+			boolean rejoined = entity.add( motion );
+
+
+			Assert.assertTrue( removed );
+			Assert.assertTrue( rejoined );
+			Assert.assertEquals( 1, motion.size() );
+			Assert.assertTrue( entity.has( Motion.class ));
+			Assert.assertEquals( "component", entity.get( String.class ));
+		}
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
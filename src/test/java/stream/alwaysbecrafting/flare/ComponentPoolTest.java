@@ -0,0 +1,105 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+//==============================================================================
+public class ComponentPoolTest {
+	//--------------------------------------------------------------------------
+
+	private static class Velocity { int x; }
+	private static class Name {}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Acquire_AfterEntityRemoved_ReturnsResetComponent() {
+		GameEngine engine = new GameEngine();
+		ComponentPool<Velocity> pool = engine.pool( Velocity.class, Velocity::new, v -> v.x = 0, 8 );
+		Velocity velocity = engine.acquire( Velocity.class );
+		velocity.x = 5;
+		Entity bullet = new Entity( velocity, new Name() );
+		engine.add( bullet );
+
+
+		engine.remove( bullet );
+		Velocity reused = engine.acquire( Velocity.class );
+
+
+		Assert.assertSame( velocity, reused );
+		Assert.assertEquals( 0, reused.x );
+		Assert.assertFalse( bullet.has( Velocity.class ));
+		Assert.assertTrue( bullet.has( Name.class ));
+		Assert.assertEquals( 1, pool.getHits() );
+		Assert.assertEquals( 1, pool.getMisses() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void RemoveComponent_FromStoredEntity_ReturnsItToPool() {
+		GameEngine engine = new GameEngine( ComponentStorage.ARCHETYPE );
+		ComponentPool<Velocity> pool = engine.pool( Velocity.class, Velocity::new, null, 8 );
+		Velocity velocity = engine.acquire( Velocity.class );
+		Entity entity = new Entity( velocity, new Name() );
+		engine.add( entity );
+
+
+		entity.remove( Velocity.class );
+
+
+		Assert.assertEquals( 1, pool.size() );
+		Assert.assertSame( velocity, pool.acquire() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Release_WhenFull_DropsComponent() {
+		GameEngine engine = new GameEngine();
+		ComponentPool<Velocity> pool = engine.pool( Velocity.class, Velocity::new, null, 1 );
+
+
+		pool.release( new Velocity() );
+		pool.release( new Velocity() );
+
+
+		Assert.assertEquals( 1, pool.size() );
+		Assert.assertEquals( 1, pool.getDropped() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Acquire_WhileEngineLocked_DoesNotWait() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		engine.pool( Velocity.class, Velocity::new, null, 8 );
+		CountDownLatch locked = new CountDownLatch( 1 );
+		CountDownLatch unlock = new CountDownLatch( 1 );
+		Thread holder = new Thread( () -> {
+			synchronized ( engine ) {
+				locked.countDown();
+				try {
+					unlock.await();
+				} catch ( InterruptedException e ) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		} );
+		holder.start();
+		locked.await();
+		AtomicReference<Velocity> acquired = new AtomicReference<>();
+
+
+		Thread acquirer = new Thread( () -> acquired.set( engine.acquire( Velocity.class )));
+		acquirer.start();
+		acquirer.join( 5000 );
+		unlock.countDown();
+		holder.join();
+
+
+		Assert.assertNotNull( acquired.get() );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
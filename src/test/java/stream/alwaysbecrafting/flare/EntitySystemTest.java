@@ -0,0 +1,378 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+//==============================================================================
+public class EntitySystemTest {
+	//--------------------------------------------------------------------------
+
+	private static class Tag {
+		final String NAME;
+		Tag( String name ) { NAME = name; }
+	}
+
+	private static class Marker {}
+
+	//--------------------------------------------------------------------------
+
+	private static EntitySystem tagSystem( StringBuilder output ) {
+		return new EntitySystem() {
+			@Override protected boolean acceptEntity( Entity entity ) {
+				return entity.has( Tag.class ) && !entity.has( Marker.class );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+			}
+		};
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithMatchingEntities_HandlesOnlyMatches() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( tagSystem( output ));
+
+		engine.add( new Entity( new Tag( "a" )));
+		engine.add( new Entity( new Tag( "b" ), new Marker() ));
+		engine.add( new Entity( new Marker() ));
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "a", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Add_SystemAfterEntities_HandlesExistingEntities() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new Entity( new Tag( "a" )));
+
+
+		engine.add( tagSystem( output ));
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "a", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void ComponentChanges_OnAddedEntity_UpdateMatches() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( tagSystem( output ));
+
+		Entity entity = new Entity();
+		engine.add( entity );
+
+
+		entity.add( new Tag( "a" ));
+		engine.update( 0 );
+		entity.add( new Marker() );
+		engine.update( 0 );
+		entity.remove( Marker.class );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "aa", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Remove_EntityDuringUpdate_DoesNotInterruptIteration() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			@Override protected boolean acceptEntity( Entity entity ) {
+				return entity.has( Tag.class );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+				engine.remove( entity );
+			}
+		} );
+
+		engine.add( new Entity( new Tag( "a" )));
+		engine.add( new Entity( new Tag( "b" )));
+
+
+		engine.update( 0 );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( 2, output.length() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithComponentConstraints_HandlesOnlyMatches() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				requireOne( Marker.class, Integer.class );
+				forbid( String.class );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+			}
+		} );
+
+		engine.add( new Entity( new Tag( "a" ), new Marker() ));
+		engine.add( new Entity( new Tag( "b" ), 1 ));
+		engine.add( new Entity( new Tag( "c" )));
+		engine.add( new Entity( new Tag( "d" ), new Marker(), "forbidden" ));
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "ab", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_InParallel_HandlesEveryEntityOnce() {
+		GameEngine engine = new GameEngine();
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		Set<Entity> handled = ConcurrentHashMap.newKeySet();
+		engine.setExecutionPool( pool );
+		engine.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				setParallel( 16 );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				if ( !handled.add( entity )) throw new IllegalStateException( "Handled twice" );
+			}
+		} );
+
+		for ( int i = 0; i < 1000; i++ ) engine.add( new Entity( new Tag( "" + i )));
+
+
+		engine.update( 0 );
+		pool.shutdown();
+
+
+		Assert.assertEquals( 1000, handled.size() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Commands_RecordedDuringUpdate_ApplyAfterSystem() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			{ requireAll( Tag.class ); }
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				engine.commands().add( entity, new Marker() );
+				engine.commands().spawn( new Entity( new Tag( "spawned" )));
+				output.append( engine.entityStream().count() );
+			}
+		} );
+		engine.add( tagSystem( output ));
+
+		engine.add( new Entity( new Tag( "a" )));
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "1spawned", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_OnlyChanged_HandlesMarkedEntitiesOnce() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				onlyChanged( Tag.class );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+			}
+		} );
+
+		Entity a = new Entity( new Tag( "a" ));
+		Entity b = new Entity( new Tag( "b" ));
+		Entity c = new Entity();
+		engine.add( a );
+		engine.add( b );
+		engine.add( c );
+		engine.update( 0 );
+
+
+		engine.update( 0 );
+		output.append( "|" );
+		b.markChanged( Tag.class );
+		c.add( new Tag( "c" ));
+		engine.update( 0 );
+		output.append( "|" );
+		engine.remove( b );
+		a.markChanged( Tag.class );
+		engine.remove( a );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "ab|bc|", output.toString() );
+		Assert.assertEquals( engine.getTick() - 2, c.getChangeTick( Tag.class ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_Amortized_HandlesEachEntityOncePerRotation() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				setAmortized( 3 );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+			}
+		} );
+
+		for ( String name : new String[] { "a", "b", "c", "d", "e", "f", "g" } ) {
+			engine.add( new Entity( new Tag( name )));
+		}
+
+
+		for ( int i = 0; i < 4; i++ ) {
+			engine.update( 0 );
+			output.append( "|" );
+		}
+
+
+		Assert.assertEquals( "ab|cd|efg|ab|", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithSpentBudget_ResumesWhereItStopped() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				setBudget( 1 );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+			}
+		} );
+
+		engine.add( new Entity( new Tag( "a" )));
+		engine.add( new Entity( new Tag( "b" )));
+		engine.add( new Entity( new Tag( "c" )));
+
+
+		for ( int i = 0; i < 4; i++ ) engine.update( 0 );
+
+
+		Assert.assertEquals( "abca", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_SystemRemovedWhileHandling_FinishesWithoutNulls() {
+		GameEngine world = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		world.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				output.append( entity.get( Tag.class ).NAME );
+				world.remove( this );
+			}
+		} );
+		world.add( new Entity( new Tag( "a" )));
+		world.add( new Entity( new Tag( "b" )));
+
+
+		world.update( 0 );
+		world.update( 0 );
+
+
+		Assert.assertEquals( "ab", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_ParallelCalledFromOtherPool_UsesExecutionPool() {
+		GameEngine world = new GameEngine();
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		Set<ForkJoinPool> pools = ConcurrentHashMap.newKeySet();
+		world.setExecutionPool( pool );
+		world.add( new EntitySystem() {
+			{
+				requireAll( Tag.class );
+				setParallel( 16 );
+			}
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				pools.add( ForkJoinTask.getPool() );
+			}
+		} );
+		for ( int i = 0; i < 1000; i++ ) world.add( new Entity( new Tag( "" + i )));
+		ForkJoinPool host = new ForkJoinPool( 1 );
+
+
+		host.submit( () -> world.update( 0 )).join();
+		host.shutdown();
+		pool.shutdown();
+
+
+		Assert.assertEquals( Collections.singleton( pool ), pools );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_Serial_HandsEntitiesOverAsOneRun() {
+		GameEngine engine = new GameEngine();
+		StringBuilder runs = new StringBuilder();
+		engine.add( new EntitySystem() {
+			@Override protected boolean acceptEntity( Entity entity ) { return entity.has( Tag.class ); }
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {}
+
+			@Override protected void onHandleEntities( Entity[] entities, int from, int to, double deltaTime ) {
+				runs.append( "[" ).append( from ).append( "," ).append( to ).append( ")" );
+			}
+		} );
+		for ( int i = 0; i < 3; i++ ) engine.add( new Entity( new Tag( "" + i )));
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "[0,3)", runs.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
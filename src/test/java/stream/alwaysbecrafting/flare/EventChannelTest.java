@@ -0,0 +1,58 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+//==============================================================================
+public class EventChannelTest {
+	//--------------------------------------------------------------------------
+
+	private static class Hit { int damage; }
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Readers_OnSameChannel_EachSeeEveryEvent() {
+		GameEngine engine = new GameEngine();
+		EventChannel<Hit> hits = engine.channel( Hit.class, Hit::new, 8 );
+		EventChannel.Reader<Hit> first = hits.reader();
+		EventChannel.Reader<Hit> second = engine.channel( Hit.class ).reader();
+
+
+		for ( int i = 1; i <= 3; i++ ) hits.publish().damage = i;
+		int[] total = new int[1];
+		int drained = first.drain( hit -> total[0] += hit.damage );
+
+
+		Assert.assertEquals( 3, drained );
+		Assert.assertEquals( 6, total[0] );
+		Assert.assertEquals( 0, first.available() );
+		Assert.assertEquals( 1, second.poll().damage );
+		Assert.assertEquals( 2, second.available() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Poll_AfterFallingBehind_SkipsOverwrittenEvents() {
+		GameEngine engine = new GameEngine();
+		EventChannel<Hit> hits = engine.channel( Hit.class, Hit::new, 4 );
+		EventChannel.Reader<Hit> reader = hits.reader();
+
+
+		for ( int i = 0; i < 10; i++ ) hits.publish().damage = i;
+
+
+		Assert.assertEquals( 6, reader.poll().damage );
+		Assert.assertEquals( 6, reader.getDropped() );
+		Assert.assertEquals( 3, reader.available() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test( expected = IllegalStateException.class )
+	public void Channel_NotCreated_Throws() {
+		new GameEngine().channel( Hit.class );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,100 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import javax.management.ObjectName;
+
+//==============================================================================
+public class FrameProfilerTest {
+	//--------------------------------------------------------------------------
+
+	private static class Tag {}
+
+	//--------------------------------------------------------------------------
+
+	private static GameEngine engineWithSystems() {
+		GameEngine engine = new GameEngine();
+		engine.add( new GameSystem() {} );
+		engine.add( new EntitySystem() {
+			{ requireAll( Tag.class ); }
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {}
+		} );
+		engine.add( new Entity( new Tag() ));
+		engine.add( new Entity( new Tag() ));
+		engine.add( new Entity() );
+		return engine;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WhileDisabled_RecordsNothing() {
+		GameEngine engine = engineWithSystems();
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( 0, engine.getProfiler().getFrameCount() );
+		Assert.assertTrue( engine.getProfiler().getSystemProfiles().isEmpty() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WhileEnabled_RecordsFramesAndSystems() {
+		GameEngine engine = engineWithSystems();
+		FrameProfiler profiler = engine.getProfiler();
+		profiler.setEnabled( true );
+
+
+		engine.update( 0 );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( 2, profiler.getFrameCount() );
+		Assert.assertEquals( 2, profiler.getSystemProfiles().size() );
+
+		SystemProfile entityProfile = profiler.getSystemProfiles().get( 1 );
+		Assert.assertEquals( 2, entityProfile.getTime().count() );
+		Assert.assertEquals( 2, entityProfile.getMatched().max() );
+		Assert.assertEquals( 2, entityProfile.getHandled().p50() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Percentile_OverRollingWindow_UsesOnlyRecentSamples() {
+		Histogram histogram = new Histogram( 100 );
+
+
+		for ( int i = 1; i <= 200; i++ ) histogram.record( i );
+
+
+		Assert.assertEquals( 200, histogram.count() );
+		Assert.assertEquals( 150, histogram.p50() );
+		Assert.assertEquals( 199, histogram.p99() );
+		Assert.assertEquals( 200, histogram.max() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void RegisterMBean_ExposesFrameCount() throws Exception {
+		GameEngine engine = engineWithSystems();
+		FrameProfiler profiler = engine.getProfiler();
+		profiler.setEnabled( true );
+		engine.update( 0 );
+
+
+		profiler.registerMBean( "test" );
+		Object frameCount = ManagementFactory.getPlatformMBeanServer().getAttribute(
+				new ObjectName( "stream.alwaysbecrafting.flare:type=FrameProfiler,name=\"test\"" ),
+				"FrameCount" );
+		profiler.unregisterMBean();
+
+
+		Assert.assertEquals( 1L, frameCount );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
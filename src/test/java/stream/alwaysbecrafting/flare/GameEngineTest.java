@@ -3,6 +3,13 @@ package stream.alwaysbecrafting.flare;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.lang.management.ManagementFactory;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
 //==============================================================================
 public class GameEngineTest {
 	//--------------------------------------------------------------------------
@@ -207,5 +214,489 @@ public class GameEngineTest {
 	}
 
 	//--------------------------------------------------------------------------
+
+	@Test public void Add_WithEqualPriorities_KeepsAllSystems() {
+		GameEngine engine = new GameEngine();
+		StringBuilder builder = new StringBuilder( "" );
+
+		engine.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				builder.append( "[1]" );
+			}
+		}, 1 );
+		engine.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				builder.append( "[2]" );
+			}
+		}, 1 );
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "[1][2]", builder.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static class Position {}
+	private static class Velocity {}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithExecutionPool_RunsIndependentSystemsConcurrently() {
+		GameEngine engine = new GameEngine();
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		CyclicBarrier barrier = new CyclicBarrier( 2 );
+		engine.setExecutionPool( pool );
+
+		// Each system waits for the other, which only succeeds if both run at once
+		engine.add( new GameSystem() {
+			{ writes( Position.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				await( barrier );
+			}
+		}, 0 );
+		engine.add( new GameSystem() {
+			{ writes( Velocity.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				await( barrier );
+			}
+		}, 0 );
+
+
+		engine.update( 0 );
+		pool.shutdown();
+
+
+		Assert.assertFalse( barrier.isBroken() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithExecutionPool_RunsConflictingSystemsInOrder() {
+		GameEngine engine = new GameEngine();
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		StringBuffer buffer = new StringBuffer( "" );
+		engine.setExecutionPool( pool );
+
+		engine.add( new GameSystem() {
+			{ writes( Position.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				buffer.append( "[w]" );
+			}
+		}, 0 );
+		engine.add( new GameSystem() {
+			{ reads( Position.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				buffer.append( "[r]" );
+			}
+		}, 0 );
+		engine.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				buffer.append( "[x]" );
+			}
+		}, 0 );
+
+
+		engine.update( 0 );
+		pool.shutdown();
+
+
+		Assert.assertEquals( "[w][r][x]", buffer.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Remove_ByHandle_InvalidatesHandle() {
+		GameEngine engine = new GameEngine();
+		long handle = engine.create();
+		Entity entity = engine.get( handle );
+
+
+		Assert.assertTrue( engine.remove( handle ));
+
+
+		Assert.assertFalse( engine.isAlive( handle ));
+		Assert.assertNull( engine.get( handle ));
+		Assert.assertFalse( engine.remove( handle ));
+		Assert.assertEquals( GameEngine.NULL_HANDLE, entity.getHandle() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Create_AfterRemoveByHandle_RecyclesEntityWithNewHandle() {
+		GameEngine engine = new GameEngine();
+		long first = engine.create();
+		Entity entity = engine.get( first );
+		entity.add( new Position() );
+		engine.remove( first );
+
+
+		long second = engine.create();
+
+
+		Assert.assertNotEquals( first, second );
+		Assert.assertSame( entity, engine.get( second ));
+		Assert.assertNull( engine.get( first ));
+		Assert.assertFalse( entity.has( Position.class ));
+		Assert.assertEquals( second, entity.getHandle() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static void await( CyclicBarrier barrier ) {
+		try {
+			barrier.await( 5, TimeUnit.SECONDS );
+		} catch ( Exception e ) {
+			throw new IllegalStateException( e );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithIntervalAndRate_RunsSystemsWhenDue() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		GameSystem everyThird = new GameSystem() {
+			{ setInterval( 3 ); }
+
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				output.append( "i" ).append( deltaTime );
+			}
+		};
+		GameSystem twoHertz = new GameSystem() {
+			{ setRate( 2 ); }
+
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				output.append( "r" ).append( deltaTime );
+			}
+		};
+		engine.add( everyThird );
+		engine.add( twoHertz );
+
+
+		for ( int i = 0; i < 6; i++ ) engine.update( 0.25 );
+
+
+		Assert.assertEquals( "r0.5i0.75r0.5i0.75r0.5", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Submit_FromManyThreads_AddsEveryEntityOnUpdate() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		engine.setIngestionCapacity( 64 );
+		Thread[] producers = new Thread[4];
+		for ( int t = 0; t < producers.length; t++ ) {
+			producers[t] = new Thread( () -> {
+				for ( int i = 0; i < 1000; i++ ) {
+					Entity entity = new Entity();
+					while ( !engine.submit( entity )) Thread.yield();
+				}
+			} );
+			producers[t].start();
+		}
+
+
+		boolean isRunning = true;
+		while ( isRunning ) {
+			isRunning = false;
+			for ( Thread producer : producers ) isRunning |= producer.isAlive();
+			engine.update( 0 );
+		}
+
+
+		Assert.assertEquals( 4000, engine.entityStream().count() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Submit_WhenFull_RefusesUntilDrained() {
+		GameEngine engine = new GameEngine();
+		engine.setIngestionCapacity( 2 );
+		Entity entity = new Entity();
+
+
+		Assert.assertTrue( engine.submit( entity ));
+		Assert.assertTrue( engine.submit( new Entity() ));
+		Assert.assertFalse( engine.submit( new Entity() ));
+
+		engine.update( 0 );
+		Assert.assertTrue( engine.submitRemove( entity ));
+		engine.update( 0 );
+
+
+		Assert.assertEquals( 1, engine.entityStream().count() );
+		Assert.assertNull( entity.getEngine() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void SubmitJob_WithDeliveryLimit_DeliversOnLaterUpdates() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.setJobExecutor( Runnable::run );
+		engine.setJobDeliveryLimit( 2 );
+
+
+		for ( int i = 0; i < 3; i++ ) {
+			int value = i;
+			engine.submitJob( null, () -> value, output::append );
+		}
+		output.append( "|" );
+		engine.update( 0 );
+		output.append( "|" );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "|01|2", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void SubmitJob_WhenOwnerRemoved_CancelsJob() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		CountDownLatch started = new CountDownLatch( 1 );
+		Entity owner = new Entity();
+		engine.add( owner );
+
+
+		Job<String> job = engine.submitJob( owner, () -> {
+			started.countDown();
+			Thread.sleep( 10_000 );
+			return "late";
+		}, output::append );
+		started.await();
+		engine.remove( owner );
+		engine.update( 0 );
+
+
+		Assert.assertTrue( job.isCancelled() );
+		Assert.assertEquals( "", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void SubmitJob_FinishedBeforeOwnerRemoved_NeverDelivers() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.setJobExecutor( Runnable::run );
+		Entity owner = new Entity();
+		engine.add( owner );
+
+
+		engine.submitJob( owner, () -> "late", output::append );
+		engine.remove( owner );
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static class Recorder extends GameSystem {
+		final StringBuilder OUTPUT;
+		final String NAME;
+		Recorder( StringBuilder output, String name ) { OUTPUT = output; NAME = name; }
+		@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+			OUTPUT.append( NAME );
+		}
+	}
+
+	private static class Input extends Recorder {
+		Input( StringBuilder output ) { super( output, "[input]" ); }
+	}
+
+	private static class Physics extends Recorder {
+		Physics( StringBuilder output ) {
+			super( output, "[physics]" );
+			runsAfter( Input.class );
+		}
+	}
+
+	private static class Render extends Recorder {
+		Render( StringBuilder output ) {
+			super( output, "[render]" );
+			runsAfter( Physics.class );
+			runsBefore( Input.class );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithDependencies_RunsDependenciesFirstWhateverPriority() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new Physics( output ), 1 );
+		engine.add( new Recorder( output, "[audio]" ), 2 );
+		engine.add( new Input( output ), 3 );
+
+
+		engine.update( 0 );
+
+
+		Assert.assertEquals( "[audio][input][physics]", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test( expected = IllegalStateException.class )
+	public void Add_WithCyclicDependencies_Throws() {
+		GameEngine engine = new GameEngine();
+		StringBuilder output = new StringBuilder();
+		engine.add( new Input( output ));
+		engine.add( new Physics( output ));
+
+
+		engine.add( new Render( output ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Get_BySystemClass_FindsAddedSystem() {
+		GameEngine engine = new GameEngine();
+		Physics physics = new Physics( new StringBuilder() );
+		engine.add( physics );
+
+
+		engine.remove( Input.class );
+
+
+		Assert.assertSame( physics, engine.get( Physics.class ));
+		Assert.assertNull( engine.get( Input.class ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_AfterRecordingThreadDies_AppliesItsCommands() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		engine.add( new GameSystem() {} );
+		Entity entity = new Entity();
+
+
+		Thread recorder = new Thread( () -> engine.commands().spawn( entity ));
+		recorder.start();
+		recorder.join();
+		engine.update( 0 );
+		engine.update( 0 );
+
+
+		Assert.assertSame( engine, entity.getEngine() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test( expected = IllegalStateException.class )
+	public void Add_EntityInAnotherEngine_Throws() {
+		GameEngine first = new GameEngine();
+		Entity entity = new Entity();
+		first.add( entity );
+
+
+		new GameEngine().add( entity );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithExecutionPool_SkipsSystemRemovedEarlierInUpdate() {
+		GameEngine world = new GameEngine();
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		StringBuffer buffer = new StringBuffer( "" );
+		world.setExecutionPool( pool );
+		GameSystem removed = new GameSystem() {
+			{ writes( Velocity.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				buffer.append( "[removed]" );
+			}
+		};
+		world.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				engine.remove( removed );
+			}
+		}, 0 );
+		world.add( new GameSystem() {
+			{ writes( Position.class ); }
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				buffer.append( "[kept]" );
+			}
+		}, 1 );
+		world.add( removed, 1 );
+
+
+		world.update( 0 );
+		pool.shutdown();
+
+
+		Assert.assertEquals( "[kept]", buffer.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static WeakReference<GameEngine> recordFromPool( ForkJoinPool pool ) {
+		GameEngine world = new GameEngine();
+		Entity entity = new Entity();
+		world.add( entity );
+		pool.submit( () -> world.commands().destroy( entity )).join();
+		return new WeakReference<>( world );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Commands_RecordedByPoolThread_DoNotKeepEngineAlive() throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool( 1 );
+
+
+		WeakReference<GameEngine> reference = recordFromPool( pool );
+		for ( int i = 0; i < 100 && reference.get() != null; i++ ) {
+			System.gc();
+			Thread.sleep( 10 );
+		}
+		pool.shutdown();
+
+
+		Assert.assertNull( reference.get() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static long spawnAndRemove( GameEngine engine, int times ) {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		long before = threads.getThreadAllocatedBytes( thread );
+
+		for ( int i = 0; i < times; i++ ) {
+			long handle = engine.create();
+			engine.get( handle ).add( engine.acquire( Position.class ));
+			engine.remove( handle );
+		}
+
+		return threads.getThreadAllocatedBytes( thread ) - before;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Create_SteadyStateSpawnAndRemove_AllocatesNothing() {
+		for ( ComponentStorage storage : ComponentStorage.values() ) {
+			GameEngine engine = new GameEngine( storage );
+			engine.pool( Position.class, Position::new, null, 16 );
+			engine.add( new EntitySystem() {
+				@Override protected boolean acceptEntity( Entity entity ) { return entity.has( Position.class ); }
+				@Override protected void onHandleEntity( Entity entity, double deltaTime ) {}
+			} );
+			spawnAndRemove( engine, 1000 );
+
+
+			long allocated = spawnAndRemove( engine, 10000 );
+
+
+			// Far less than one byte per spawn; only the measurement allocates
+			Assert.assertTrue( storage + " allocated " + allocated + " bytes", allocated < 1024 );
+		}
+	}
+
+	//--------------------------------------------------------------------------
 }
 //------------------------------------------------------------------------------
\ No newline at end of file
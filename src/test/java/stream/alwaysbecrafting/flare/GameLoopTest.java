@@ -0,0 +1,87 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+//==============================================================================
+public class GameLoopTest {
+	//--------------------------------------------------------------------------
+
+	private static final long SECOND = 1_000_000_000L;
+
+	//--------------------------------------------------------------------------
+
+	private static GameEngine countingEngine( StringBuilder output ) {
+		GameEngine engine = new GameEngine();
+		engine.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				output.append( "[" ).append( deltaTime ).append( "]" );
+			}
+		} );
+		return engine;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Tick_WithElapsedSteps_UpdatesWithFixedDelta() {
+		StringBuilder output = new StringBuilder();
+		GameLoop loop = new GameLoop( countingEngine( output ), 4 );
+
+
+		loop.tick( 0 );
+		int steps = loop.tick( SECOND / 2 );
+
+
+		Assert.assertEquals( 2, steps );
+		Assert.assertEquals( "[0.25][0.25]", output.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Tick_BetweenSteps_ReportsInterpolationAlpha() {
+		GameLoop loop = new GameLoop( countingEngine( new StringBuilder() ), 4 );
+
+
+		loop.tick( 0 );
+		loop.tick( SECOND / 8 );
+
+
+		Assert.assertEquals( 0.5, loop.getAlpha(), 1e-9 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Tick_FarBehind_LimitsCatchUpSteps() {
+		StringBuilder output = new StringBuilder();
+		GameLoop loop = new GameLoop( countingEngine( output ), 4 );
+		loop.setMaxCatchUpSteps( 3 );
+
+
+		loop.tick( 0 );
+		int behind = loop.tick( 10 * SECOND );
+		int next = loop.tick( 10 * SECOND + SECOND / 4 );
+
+
+		Assert.assertEquals( 3, behind );
+		Assert.assertEquals( 1, next );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Tick_WithRenderEngine_RendersOncePerFrame() {
+		StringBuilder simulation = new StringBuilder();
+		StringBuilder render = new StringBuilder();
+		GameLoop loop = new GameLoop( countingEngine( simulation ), 4 );
+		loop.setRenderEngine( countingEngine( render ));
+
+
+		loop.tick( 0 );
+		loop.tick( SECOND / 2 );
+
+
+		Assert.assertEquals( "[0.0][0.5]", render.toString() );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
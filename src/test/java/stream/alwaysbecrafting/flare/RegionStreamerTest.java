@@ -0,0 +1,251 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//==============================================================================
+public class RegionStreamerTest {
+	//--------------------------------------------------------------------------
+
+	private static class Position {
+		double x, y;
+		Position( double x, double y ) { this.x = x; this.y = y; }
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ComponentCodecs CODECS = new ComponentCodecs();
+
+	//--------------------------------------------------------------------------
+
+	@Before public void setUp() {
+		CODECS.register( 1, Position.class, new ComponentCodec<Position>() {
+			@Override public void write( Position component, ByteBuffer buffer ) {
+				buffer.putDouble( component.x );
+				buffer.putDouble( component.y );
+			}
+			@Override public Position read( ByteBuffer buffer ) {
+				return new Position( buffer.getDouble(), buffer.getDouble() );
+			}
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private RegionStreamer<Position> streamer() {
+		RegionStreamer<Position> streamer = new RegionStreamer<>(
+				CODECS, folder.getRoot().toPath(), Position.class, p -> p.x, p -> p.y, 10 );
+		streamer.setLoadRadius( 0 );
+		streamer.setChunkBudget( 1 );
+		return streamer;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static void settle( GameEngine engine, RegionStreamer<?> streamer ) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5000;
+		do {
+			engine.update( 0 );
+			Thread.sleep( 1 );
+		} while ( !streamer.isSettled() && System.currentTimeMillis() < deadline );
+		engine.update( 0 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static List<Double> xs( GameEngine engine ) {
+		return engine.entityStream()
+				.map( entity -> entity.get( Position.class ).x )
+				.sorted()
+				.collect( Collectors.toList() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_FocusLeavesChunk_SavesAndRemovesIt() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		engine.add( new Entity( new Position( 1, 1 )));
+		engine.add( new Entity( new Position( 2, 2 )));
+		engine.add( new Entity( new Position( 55, 5 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		engine.add( streamer );
+
+
+		player.get( Position.class ).x = 55;
+		settle( engine, streamer );
+
+
+		Assert.assertEquals( 1, streamer.getResidentChunks() );
+		Assert.assertEquals( Arrays.asList( 55.0, 55.0 ), xs( engine ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_FocusReturns_LoadsSavedEntities() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		engine.add( new Entity( new Position( 1, 1 )));
+		engine.add( new Entity( new Position( 2, 2 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		engine.add( streamer );
+		player.get( Position.class ).x = 55;
+		settle( engine, streamer );
+
+
+		player.get( Position.class ).x = 5;
+		settle( engine, streamer );
+
+
+		Assert.assertEquals( Arrays.asList( 1.0, 2.0, 5.0 ), xs( engine ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_LargeChunk_AddsAtMostLimitPerUpdate() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		for ( int i = 0; i < 10; i++ ) engine.add( new Entity( new Position( i, 1 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.setMaxAddsPerUpdate( 3 );
+		streamer.addFocus( player );
+		engine.add( streamer );
+		player.get( Position.class ).x = 55;
+		settle( engine, streamer );
+		player.get( Position.class ).x = 5;
+		engine.update( 0 );
+		long deadline = System.currentTimeMillis() + 5000;
+		while ( engine.entityStream().count() == 1 && System.currentTimeMillis() < deadline ) {
+			Thread.sleep( 1 );
+			engine.update( 0 );
+		}
+
+
+		long first = engine.entityStream().count() - 1;
+		engine.update( 0 );
+		long second = engine.entityStream().count() - 1;
+
+
+		Assert.assertEquals( 3, first );
+		Assert.assertEquals( 6, second );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_EntitySpawnsInSavedChunk_KeepsSavedEntities() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		engine.add( new Entity( new Position( 1, 1 )));
+		engine.add( new Entity( new Position( 2, 2 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		engine.add( streamer );
+		player.get( Position.class ).x = 55;
+		settle( engine, streamer );
+
+
+		engine.add( new Entity( new Position( 3, 3 )));
+		player.get( Position.class ).x = 105;
+		settle( engine, streamer );
+		player.get( Position.class ).x = 5;
+		settle( engine, streamer );
+
+
+		Assert.assertEquals( Arrays.asList( 1.0, 2.0, 3.0, 5.0 ), xs( engine ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Start_WithSavedChunks_KeepsSavedEntities() throws InterruptedException {
+		GameEngine first = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		first.add( player );
+		first.add( new Entity( new Position( 1, 1 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		first.add( streamer );
+		player.get( Position.class ).x = 55;
+		settle( first, streamer );
+
+
+		GameEngine second = new GameEngine();
+		Entity other = new Entity( new Position( 55, 5 ));
+		second.add( other );
+		second.add( new Entity( new Position( 3, 3 )));
+		RegionStreamer<Position> restarted = streamer();
+		restarted.addFocus( other );
+		second.add( restarted );
+		settle( second, restarted );
+		other.get( Position.class ).x = 5;
+		settle( second, restarted );
+
+
+		Assert.assertEquals( Arrays.asList( 1.0, 3.0, 5.0 ), xs( second ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_EntityMovesWithFocus_StaysInEngine() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		Entity follower = new Entity( new Position( 1, 1 ));
+		engine.add( follower );
+		engine.add( new Entity( new Position( 2, 2 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		engine.add( streamer );
+
+
+		player.get( Position.class ).x = 55;
+		follower.get( Position.class ).x = 56;
+		follower.markChanged( Position.class );
+		settle( engine, streamer );
+
+
+		Assert.assertEquals( Arrays.asList( 55.0, 56.0 ), xs( engine ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Remove_ThenAddAgain_RestoresSavedEntities() throws InterruptedException {
+		GameEngine engine = new GameEngine();
+		Entity player = new Entity( new Position( 5, 5 ));
+		engine.add( player );
+		engine.add( new Entity( new Position( 1, 1 )));
+		engine.add( new Entity( new Position( 2, 2 )));
+		RegionStreamer<Position> streamer = streamer();
+		streamer.addFocus( player );
+		engine.add( streamer );
+		settle( engine, streamer );
+
+
+		engine.remove( streamer );
+		List<Double> removed = xs( engine );
+		engine.add( streamer );
+		settle( engine, streamer );
+
+
+		Assert.assertEquals( Arrays.asList( 5.0 ), removed );
+		Assert.assertEquals( Arrays.asList( 1.0, 2.0, 5.0 ), xs( engine ));
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
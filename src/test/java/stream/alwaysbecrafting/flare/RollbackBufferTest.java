@@ -0,0 +1,123 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//==============================================================================
+public class RollbackBufferTest {
+	//--------------------------------------------------------------------------
+
+	private static class Position { int x; }
+	private static class Velocity { int dx; Velocity( int dx ) { this.dx = dx; } }
+
+	//--------------------------------------------------------------------------
+
+	private static GameEngine movingEngine() {
+		GameEngine engine = new GameEngine();
+		engine.add( new EntitySystem() {
+			{ requireAll( Position.class, Velocity.class ); }
+
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+				entity.get( Position.class ).x += entity.get( Velocity.class ).dx;
+			}
+		} );
+		return engine;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static RollbackBuffer rollback( GameEngine engine, int frames ) {
+		RollbackBuffer rollback = new RollbackBuffer( engine, frames );
+		rollback.register( Position.class, Position::new, ( from, to ) -> to.x = from.x );
+		return rollback;
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Restore_AfterUpdates_ReturnsComponentsAndEntities() {
+		GameEngine engine = movingEngine();
+		RollbackBuffer rollback = rollback( engine, 4 );
+		Position position = new Position();
+		Entity entity = new Entity( position, new Velocity( 1 ));
+		engine.add( entity );
+		int frame = rollback.save();
+
+		engine.update( 0 );
+		Entity spawned = new Entity( new Position() );
+		engine.add( spawned );
+		engine.remove( entity );
+		rollback.save();
+
+
+		rollback.restore( frame );
+
+
+		Assert.assertEquals( 0, position.x );
+		Assert.assertSame( position, entity.get( Position.class ));
+		Assert.assertTrue( engine.entityStream().anyMatch( e -> e == entity ));
+		Assert.assertFalse( engine.entityStream().anyMatch( e -> e == spawned ));
+		Assert.assertEquals( frame, rollback.getLatestFrame() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Resimulate_WithCorrectedInput_ReplaysToLatestFrame() {
+		GameEngine engine = movingEngine();
+		RollbackBuffer rollback = rollback( engine, 8 );
+		Velocity velocity = new Velocity( 1 );
+		Entity entity = new Entity( new Position(), velocity );
+		engine.add( entity );
+		rollback.save();
+		for ( int i = 0; i < 5; i++ ) {
+			engine.update( 0 );
+			rollback.save();
+		}
+
+
+		rollback.resimulate( 2, 0, frame -> velocity.dx = 10 );
+
+
+		Assert.assertEquals( 2 + 3 * 10, entity.get( Position.class ).x );
+		Assert.assertEquals( 5, rollback.getLatestFrame() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test( expected = IllegalArgumentException.class )
+	public void Restore_FrameOutOfRing_Throws() {
+		GameEngine engine = movingEngine();
+		RollbackBuffer rollback = rollback( engine, 2 );
+		for ( int i = 0; i < 4; i++ ) rollback.save();
+
+
+		rollback.restore( 1 );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Resimulate_FromEarlierFrame_RewindsAndReplaysTick() {
+		GameEngine engine = movingEngine();
+		RollbackBuffer rollback = rollback( engine, 8 );
+		List<Long> ticks = new ArrayList<>();
+		engine.add( new Entity( new Position(), new Velocity( 1 )));
+		rollback.save();
+		for ( int i = 0; i < 5; i++ ) {
+			engine.update( 0 );
+			rollback.save();
+		}
+
+
+		rollback.resimulate( 2, 0, frame -> ticks.add( engine.getTick() ));
+
+
+		Assert.assertEquals( Arrays.asList( 2L, 3L, 4L ), ticks );
+		Assert.assertEquals( 5, engine.getTick() );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
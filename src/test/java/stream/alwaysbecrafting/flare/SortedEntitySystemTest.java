@@ -0,0 +1,135 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//==============================================================================
+public class SortedEntitySystemTest {
+	//--------------------------------------------------------------------------
+
+	private static class Depth {
+		final String NAME;
+		int z;
+		Depth( String name, int z ) { NAME = name; this.z = z; }
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static class DepthSystem extends SortedEntitySystem {
+		final StringBuilder OUTPUT = new StringBuilder();
+
+		DepthSystem() {
+			super( Comparator.comparingInt( e -> e.get( Depth.class ).z ), Depth.class );
+			requireAll( Depth.class );
+		}
+
+		@Override protected void onHandleEntity( Entity entity, double deltaTime ) {
+			OUTPUT.append( entity.get( Depth.class ).NAME );
+		}
+
+		String frame( GameEngine engine ) {
+			OUTPUT.setLength( 0 );
+			engine.update( 0 );
+			return OUTPUT.toString();
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_WithArrivals_HandlesInOrder() {
+		GameEngine engine = new GameEngine();
+		DepthSystem system = new DepthSystem();
+		engine.add( system );
+		engine.add( new Entity( new Depth( "c", 3 )));
+		engine.add( new Entity( new Depth( "a", 1 )));
+
+
+		String first = system.frame( engine );
+		engine.add( new Entity( new Depth( "b", 2 )));
+		String second = system.frame( engine );
+
+
+		Assert.assertEquals( "ac", first );
+		Assert.assertEquals( "abc", second );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_AfterMarkedKeyChange_Resorts() {
+		GameEngine engine = new GameEngine();
+		DepthSystem system = new DepthSystem();
+		engine.add( system );
+		Entity a = new Entity( new Depth( "a", 1 ));
+		engine.add( a );
+		engine.add( new Entity( new Depth( "b", 2 )));
+		engine.add( new Entity( new Depth( "c", 3 )));
+		system.frame( engine );
+
+
+		a.get( Depth.class ).z = 10;
+		String unmarked = system.frame( engine );
+		a.markChanged( Depth.class );
+		String marked = system.frame( engine );
+
+
+		Assert.assertEquals( "abc", unmarked );
+		Assert.assertEquals( "bca", marked );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_AfterRemovalAndReadd_HandlesOnce() {
+		GameEngine engine = new GameEngine();
+		DepthSystem system = new DepthSystem();
+		engine.add( system );
+		Entity a = new Entity( new Depth( "a", 1 ));
+		Entity b = new Entity( new Depth( "b", 2 ));
+		engine.add( a );
+		engine.add( b );
+		for ( int i = 0; i < 20; i++ ) engine.add( new Entity( new Depth( "", 5 )));
+		system.frame( engine );
+
+
+		engine.remove( a );
+		engine.remove( b );
+		engine.add( b );
+		String output = system.frame( engine );
+
+
+		Assert.assertEquals( "b", output );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Update_AfterOneKeyChange_ReinsertsWithoutWalkingOrder() {
+		GameEngine engine = new GameEngine();
+		AtomicInteger comparisons = new AtomicInteger();
+		SortedEntitySystem system = new SortedEntitySystem( ( x, y ) -> {
+			comparisons.incrementAndGet();
+			return Integer.compare( x.get( Depth.class ).z, y.get( Depth.class ).z );
+		}, Depth.class ) {
+			@Override protected boolean acceptEntity( Entity entity ) { return entity.has( Depth.class ); }
+			@Override protected void onHandleEntity( Entity entity, double deltaTime ) {}
+		};
+		engine.add( system );
+		Entity first = new Entity( new Depth( "first", 0 ));
+		engine.add( first );
+		for ( int i = 1; i < 1000; i++ ) engine.add( new Entity( new Depth( "", i )));
+		engine.update( 0 );
+		comparisons.set( 0 );
+
+
+		first.get( Depth.class ).z = 500;
+		first.markChanged( Depth.class );
+		engine.update( 0 );
+
+
+		Assert.assertTrue( comparisons + " comparisons", comparisons.get() < 20 );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,114 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+//==============================================================================
+public class SpatialGridTest {
+	//--------------------------------------------------------------------------
+
+	private static class Position {
+		double x, y;
+		Position( double x, double y ) { this.x = x; this.y = y; }
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static SpatialGrid<Position> grid( GameEngine engine ) {
+		SpatialGrid<Position> grid = new SpatialGrid<>( Position.class, p -> p.x, p -> p.y, 10 );
+		engine.add( grid );
+		return grid;
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static Set<Entity> found( Entity[] out, int count ) {
+		return new HashSet<>( Arrays.asList( out ).subList( 0, count ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void QueryRadius_AfterMovesAndRemovals_MatchesBruteForce() {
+		GameEngine engine = new GameEngine();
+		SpatialGrid<Position> grid = grid( engine );
+		Random random = new Random( 1 );
+		for ( int i = 0; i < 500; i++ ) {
+			engine.add( new Entity( new Position( random.nextDouble() * 200 - 100, random.nextDouble() * 200 - 100 )));
+		}
+		List<Entity> entities = engine.entityStream().collect( Collectors.toList() );
+
+
+		for ( int i = 0; i < 100; i++ ) {
+			Entity entity = entities.get( i );
+			entity.get( Position.class ).x += 37;
+			entity.markChanged( Position.class );
+		}
+		for ( int i = 100; i < 150; i++ ) engine.remove( entities.get( i ));
+		engine.update( 0 );
+
+		Entity[] out = new Entity[500];
+		int count = grid.queryRadius( 5, -5, 30, out );
+
+
+		Set<Entity> expected = engine.entityStream()
+				.filter( e -> {
+					Position p = e.get( Position.class );
+					return ( p.x - 5 ) * ( p.x - 5 ) + ( p.y + 5 ) * ( p.y + 5 ) <= 30 * 30;
+				} )
+				.collect( Collectors.toSet() );
+		Assert.assertEquals( 450, grid.size() );
+		Assert.assertEquals( expected.size(), count );
+		Assert.assertEquals( expected, found( out, count ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void QueryRange_WithSmallOutput_StopsWhenFull() {
+		GameEngine engine = new GameEngine();
+		SpatialGrid<Position> grid = grid( engine );
+		for ( int i = 0; i < 10; i++ ) engine.add( new Entity( new Position( i, i )));
+
+
+		Entity[] out = new Entity[3];
+		int count = grid.queryRange( 0, 0, 100, 100, out );
+		int none = grid.queryRange( 50, 50, 100, 100, new Entity[3] );
+
+
+		Assert.assertEquals( 3, count );
+		Assert.assertEquals( 0, none );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Nearest_WithScatteredEntities_ReturnsClosestInOrder() {
+		GameEngine engine = new GameEngine();
+		SpatialGrid<Position> grid = grid( engine );
+		Entity near = new Entity( new Position( 51, 50 ));
+		Entity nearer = new Entity( new Position( 50, 50.5 ));
+		Entity far = new Entity( new Position( -40, 90 ));
+		engine.add( far );
+		engine.add( near );
+		engine.add( nearer );
+		engine.add( new Entity( new Position( 80, 0 )));
+
+
+		Entity[] out = new Entity[3];
+		int count = grid.nearest( 49, 50, out );
+
+
+		Assert.assertEquals( 3, count );
+		Assert.assertSame( nearer, out[0] );
+		Assert.assertSame( near, out[1] );
+		Assert.assertEquals( 2, grid.nearest( 200, 200, new Entity[2] ));
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
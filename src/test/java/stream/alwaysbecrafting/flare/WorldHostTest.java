@@ -0,0 +1,95 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+//==============================================================================
+public class WorldHostTest {
+	//--------------------------------------------------------------------------
+
+	@Test public void Start_WithManyWorlds_TicksEachWithoutOverlap() throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool( 4 );
+		WorldHost host = new WorldHost( pool );
+		AtomicInteger overlaps = new AtomicInteger();
+		List<HostedWorld> worlds = new ArrayList<>();
+		for ( int i = 0; i < 200; i++ ) {
+			GameEngine engine = new GameEngine();
+			engine.add( new GameSystem() {
+				private final AtomicInteger RUNNING = new AtomicInteger();
+
+				@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+					if ( RUNNING.incrementAndGet() > 1 ) overlaps.incrementAndGet();
+					RUNNING.decrementAndGet();
+				}
+			} );
+			worlds.add( host.add( engine, 100 ));
+		}
+
+
+		host.start();
+		Thread.sleep( 300 );
+		host.stop();
+		pool.shutdown();
+		Assert.assertTrue( pool.awaitTermination( 10, TimeUnit.SECONDS ));
+
+
+		Assert.assertEquals( 0, overlaps.get() );
+		for ( HostedWorld world : worlds ) {
+			Assert.assertTrue( world.getTicks() > 0 );
+			Assert.assertEquals( world.getTicks(), world.getUpdateTime().count() );
+		}
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Tick_WhenUpdateThrows_RemovesWorld() throws InterruptedException {
+		WorldHost host = new WorldHost();
+		GameEngine engine = new GameEngine();
+		engine.add( new GameSystem() {
+			@Override public void onUpdate( GameEngine engine, double deltaTime ) {
+				throw new IllegalStateException( "broken" );
+			}
+		} );
+		HostedWorld world = host.add( engine, 1000 );
+
+
+		host.start();
+		for ( int i = 0; i < 100 && world.isHosted(); i++ ) Thread.sleep( 10 );
+		host.stop();
+
+
+		Assert.assertFalse( world.isHosted() );
+		Assert.assertEquals( "broken", world.getFailure().getMessage() );
+		Assert.assertTrue( host.getWorlds().isEmpty() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Close_WithGivenPool_StopsTicksAndLeavesPoolRunning() throws InterruptedException {
+		ForkJoinPool pool = new ForkJoinPool( 2 );
+		WorldHost host = new WorldHost( pool );
+		HostedWorld world = host.add( new GameEngine(), 1000 );
+		host.start();
+		for ( int i = 0; i < 100 && world.getTicks() == 0; i++ ) Thread.sleep( 10 );
+
+
+		host.close();
+		pool.awaitQuiescence( 10, TimeUnit.SECONDS );
+		long ticks = world.getTicks();
+		Thread.sleep( 50 );
+
+
+		Assert.assertEquals( ticks, world.getTicks() );
+		Assert.assertFalse( pool.isShutdown() );
+		pool.shutdown();
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file
@@ -0,0 +1,184 @@
+package stream.alwaysbecrafting.flare;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+
+//==============================================================================
+public class WorldSnapshotTest {
+	//--------------------------------------------------------------------------
+
+	private static class Health {
+		int value;
+		Health( int value ) { this.value = value; }
+	}
+
+	private static class Name {
+		final String VALUE;
+		Name( String value ) { VALUE = value; }
+	}
+
+	private static class Unsaved {}
+
+	//--------------------------------------------------------------------------
+
+	@Rule public TemporaryFolder folder = new TemporaryFolder();
+
+	private final ComponentCodecs CODECS = new ComponentCodecs();
+
+	//--------------------------------------------------------------------------
+
+	@Before public void setUp() {
+		CODECS.register( 1, Health.class, new ComponentCodec<Health>() {
+			@Override public void write( Health component, ByteBuffer buffer ) {
+				buffer.putInt( component.value );
+			}
+			@Override public Health read( ByteBuffer buffer ) {
+				return new Health( buffer.getInt() );
+			}
+		} );
+		CODECS.register( 2, Name.class, new ComponentCodec<Name>() {
+			@Override public void write( Name component, ByteBuffer buffer ) {
+				for ( char c : component.VALUE.toCharArray() ) buffer.putChar( c );
+			}
+			@Override public Name read( ByteBuffer buffer ) {
+				StringBuilder builder = new StringBuilder();
+				while ( buffer.hasRemaining() ) builder.append( buffer.getChar() );
+				return new Name( builder.toString() );
+			}
+		} );
+	}
+
+	//--------------------------------------------------------------------------
+
+	private static List<String> describe( GameEngine engine ) {
+		return engine.entityStream()
+				.map( entity -> entity.get( Name.class ).VALUE + "=" + entity.get( Health.class ).value )
+				.sorted( Comparator.naturalOrder() )
+				.collect( Collectors.toList() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Load_FullSnapshot_RestoresSavedComponents() throws IOException {
+		GameEngine source = new GameEngine();
+		source.add( new Entity( new Name( "orc" ), new Health( 10 ), new Unsaved() ));
+		source.add( new Entity( new Name( "elf" ), new Health( 20 )));
+		Path file = folder.newFile().toPath();
+
+
+		new WorldSnapshot( source, CODECS ).save( file );
+		GameEngine target = new GameEngine();
+		new SnapshotLoader( target, CODECS ).load( file );
+
+
+		Assert.assertEquals( describe( source ), describe( target ));
+		Assert.assertEquals( 0, target.entityStream().filter( entity -> entity.has( Unsaved.class )).count() );
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Load_DeltaAfterFull_AppliesOnlyChanges() throws IOException {
+		GameEngine source = new GameEngine();
+		Entity orc = new Entity( new Name( "orc" ), new Health( 10 ));
+		Entity elf = new Entity( new Name( "elf" ), new Health( 20 ));
+		source.add( orc );
+		source.add( elf );
+		source.add( new Entity( new Name( "imp" ), new Health( 5 )));
+		WorldSnapshot snapshot = new WorldSnapshot( source, CODECS );
+		Path base = folder.newFile().toPath();
+		Path delta = folder.newFile().toPath();
+		snapshot.save( base );
+
+		orc.get( Health.class ).value = 7;
+		snapshot.markChanged( orc );
+		source.remove( elf );
+		source.add( new Entity( new Name( "dwarf" ), new Health( 30 )));
+
+
+		snapshot.saveDelta( delta );
+		GameEngine target = new GameEngine();
+		SnapshotLoader loader = new SnapshotLoader( target, CODECS );
+		loader.load( base );
+		int applied = loader.load( delta );
+
+
+		Assert.assertEquals( 3, applied );
+		Assert.assertEquals( describe( source ), describe( target ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void SaveDelta_AfterEntityMarkedChanged_IncludesEntity() throws IOException {
+		GameEngine source = new GameEngine();
+		Entity orc = new Entity( new Name( "orc" ), new Health( 10 ));
+		source.add( orc );
+		source.add( new Entity( new Name( "elf" ), new Health( 20 )));
+		WorldSnapshot snapshot = new WorldSnapshot( source, CODECS );
+		Path base = folder.newFile().toPath();
+		Path delta = folder.newFile().toPath();
+		snapshot.save( base );
+
+		orc.get( Health.class ).value = 7;
+		orc.markChanged( Health.class );
+
+
+		snapshot.saveDelta( delta );
+		GameEngine target = new GameEngine();
+		SnapshotLoader loader = new SnapshotLoader( target, CODECS );
+		loader.load( base );
+		int applied = loader.load( delta );
+
+
+		Assert.assertEquals( 1, applied );
+		Assert.assertEquals( describe( source ), describe( target ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test public void Save_WithManyEntities_GrowsMapping() throws IOException {
+		GameEngine source = new GameEngine();
+		for ( int i = 0; i < 20_000; i++ ) {
+			source.add( new Entity( new Name( "entity number " + i ), new Health( i )));
+		}
+		Path file = folder.newFile().toPath();
+
+
+		new WorldSnapshot( source, CODECS ).save( file );
+		GameEngine target = new GameEngine();
+		new SnapshotLoader( target, CODECS ).load( file );
+
+
+		Assert.assertEquals( describe( source ), describe( target ));
+	}
+
+	//--------------------------------------------------------------------------
+
+	@Test( expected = IOException.class )
+	public void Load_RecordCutShort_ThrowsIOException() throws IOException {
+		GameEngine source = new GameEngine();
+		source.add( new Entity( new Name( "orc" ), new Health( 10 )));
+		Path file = folder.newFile().toPath();
+		new WorldSnapshot( source, CODECS ).save( file );
+
+		ByteBuffer bytes = ByteBuffer.wrap( Files.readAllBytes( file ));
+		bytes.putInt( 0, bytes.getInt( 0 ) - 2 );
+		Files.write( file, bytes.array() );
+
+
+		new SnapshotLoader( new GameEngine(), CODECS ).load( file );
+	}
+
+	//--------------------------------------------------------------------------
+}
+//------------------------------------------------------------------------------
\ No newline at end of file